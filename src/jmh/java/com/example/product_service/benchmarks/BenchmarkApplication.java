@@ -0,0 +1,68 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.ProductServiceApplication;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Starts the service without Eureka or Rabbit listeners, on its own in-memory H2
+final class BenchmarkApplication {
+
+    static final String SECRET = "dGVzdC1zZWNyZXQta2V5LWZvci10aGUtcHJvZHVjdC1zZXJ2aWNlLXRlc3RzLW9ubHk=";
+
+    private BenchmarkApplication() { }
+
+    static ConfigurableApplicationContext start(Map<String, Object> properties) {
+        return run(properties, WebApplicationType.NONE);
+    }
+
+    // With Tomcat listening on a random port, see port(context)
+    static ConfigurableApplicationContext startServer(Map<String, Object> properties) {
+        Map<String, Object> withPort = new HashMap<>(properties);
+        withPort.put("server.port", "0");
+        return run(withPort, WebApplicationType.SERVLET);
+    }
+
+    static int port(ConfigurableApplicationContext context) {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    private static ConfigurableApplicationContext run(Map<String, Object> properties, WebApplicationType webApplicationType) {
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("jwt.secret", SECRET);
+        defaults.put("eureka.client.enabled", "false");
+        defaults.put("spring.rabbitmq.listener.simple.auto-startup", "false");
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:benchmark-" + System.nanoTime());
+        defaults.put("logging.level.root", "WARN");
+        defaults.put("spring.main.banner-mode", "off");
+        defaults.putAll(properties);
+
+        // Passed as command line arguments so they win over application.properties
+        String[] args = defaults.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+
+        return new SpringApplicationBuilder(ProductServiceApplication.class)
+                .web(webApplicationType)
+                .run(args);
+    }
+
+    // Returns the ids of the new products
+    static List<Long> seed(ConfigurableApplicationContext context, int count, int stock) {
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        List<ProductEntity> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(new ProductEntity("Product " + i, "Benchmark product number " + i, 10.0 + i, stock));
+        }
+        return productRepository.saveAll(products).stream()
+                .map(ProductEntity::getId)
+                .toList();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.config.JwtUtils;
+import com.example.product_service.services.TokenDataServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Auth cost of an admin request: a parser built and the signature verified per claim, against the cached claims
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtClaimsBenchmark {
+
+    private static final String SECRET = BenchmarkApplication.SECRET;
+
+    private SecretKey secretKey;
+    private JwtUtils jwtUtils;
+    private TokenDataServiceImpl tokenDataService;
+    private String token;
+
+    @Setup
+    public void setup() {
+        secretKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        jwtUtils = new JwtUtils(SECRET, 10_000, Duration.ofMinutes(15));
+        tokenDataService = new TokenDataServiceImpl();
+        ReflectionTestUtils.setField(tokenDataService, "jwtUtils", jwtUtils);
+
+        token = Jwts.builder()
+                .subject("admin@example.com")
+                .claim("id", "1")
+                .claim("role", "ADMIN")
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(secretKey)
+                .compact();
+    }
+
+    // What JwtUtils.parseClaims did before: a new parser and a signature check every call
+    @Benchmark
+    public Claims parserPerCall() {
+        return Jwts.parser()
+                .verifyWith(secretKey)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    @Benchmark
+    public Claims sharedParser() {
+        return jwtUtils.verifyClaims(token);
+    }
+
+    @Benchmark
+    public Claims cachedClaims() {
+        return jwtUtils.parseClaims(token);
+    }
+
+    // A request reading the role, id and email, as the controllers would
+    @Benchmark
+    public String requestWithCachedClaims() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        tokenDataService.getId(request);
+        tokenDataService.getEmail(request);
+        return tokenDataService.getRole(request);
+    }
+}
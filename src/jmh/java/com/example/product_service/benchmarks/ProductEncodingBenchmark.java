@@ -0,0 +1,87 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Encoding and decoding a /details response in JSON against CBOR. The payload sizes, plain and gzipped,
+// are printed once per trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProductEncodingBenchmark {
+
+    @Param({"50", "500"})
+    private int products;
+
+    private List<ProductDTO> page;
+    private ObjectWriter jsonWriter;
+    private ObjectWriter cborWriter;
+    private ObjectReader jsonReader;
+    private ObjectReader cborReader;
+    private byte[] json;
+    private byte[] cbor;
+
+    // What the calling services decode the products into
+    public record Product(Long id, String name, String productdescription, Double productprice, Integer stock) { }
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper jsonMapper = new ObjectMapper();
+        CBORMapper cborMapper = new CBORMapper();
+        jsonWriter = jsonMapper.writerFor(jsonMapper.getTypeFactory().constructCollectionType(List.class, ProductDTO.class));
+        cborWriter = cborMapper.writerFor(cborMapper.getTypeFactory().constructCollectionType(List.class, ProductDTO.class));
+        jsonReader = jsonMapper.readerForListOf(Product.class);
+        cborReader = cborMapper.readerForListOf(Product.class);
+
+        page = new ArrayList<>(products);
+        for (long id = 1; id <= products; id++) {
+            page.add(new ProductDTO(id, "Product " + id, "Benchmark product number " + id + " with a longer description",
+                    10.0 + id, (int) id % 100, id));
+        }
+        json = jsonWriter.writeValueAsBytes(page);
+        cbor = cborWriter.writeValueAsBytes(page);
+        System.out.printf("%n%d products: json %d bytes (%d gzipped), cbor %d bytes (%d gzipped)%n",
+                products, json.length, gzipped(json), cbor.length, gzipped(cbor));
+    }
+
+    private static int gzipped(byte[] payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(payload);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return jsonWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] encodeCbor() throws Exception {
+        return cborWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Product> decodeJson() throws Exception {
+        return jsonReader.readValue(json);
+    }
+
+    @Benchmark
+    public List<Product> decodeCbor() throws Exception {
+        return cborReader.readValue(cbor);
+    }
+}
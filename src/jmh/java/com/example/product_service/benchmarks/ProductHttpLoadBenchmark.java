@@ -0,0 +1,90 @@
+package com.example.product_service.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Throughput and latency percentiles (SampleTime) of GET /{id} and POST /details over HTTP, on Tomcat's
+// platform thread pool and with the virtual-threads profile. The cache is off so every request blocks on JDBC.
+// Virtual threads need a JDK 21 run, on 17 both modes use platform threads:
+// JAVA_HOME=<jdk 21> mvn -Pbenchmark -DskipTests verify -Djmh.args="-f 1 ProductHttpLoad"
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class ProductHttpLoadBenchmark {
+
+    private static final int CATALOG_SIZE = 5_000;
+    private static final int DETAILS_SIZE = 20;
+
+    @Param({"false", "true"})
+    private String virtualThreads;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("product.cache.enabled", "false");
+        if (Boolean.parseBoolean(virtualThreads)) {
+            properties.put("spring.profiles.active", "virtual-threads");
+        }
+        context = BenchmarkApplication.startServer(properties);
+        ids = BenchmarkApplication.seed(context, CATALOG_SIZE, 100);
+        baseUrl = "http://localhost:" + BenchmarkApplication.port(context) + "/api/product";
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    @Benchmark
+    public int getProductById() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + randomId())).GET().build();
+        return send(request);
+    }
+
+    @Benchmark
+    public int getProductDetails() throws IOException, InterruptedException {
+        String body = ThreadLocalRandom.current().ints(DETAILS_SIZE, 0, ids.size())
+                .mapToObj(i -> String.valueOf(ids.get(i)))
+                .collect(Collectors.joining(",", "[", "]"));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/details"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return send(request);
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
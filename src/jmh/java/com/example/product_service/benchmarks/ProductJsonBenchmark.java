@@ -0,0 +1,50 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.services.ProductJsonCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Encoding a /details or /products response with Jackson against joining the cached encodings of its products
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProductJsonBenchmark {
+
+    @Param({"50", "500"})
+    private int products;
+
+    private List<ProductDTO> page;
+    private ObjectWriter listWriter;
+    private ProductJsonCache productJson;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, ProductDTO.class));
+        productJson = new ProductJsonCache(objectMapper, true, 10_000);
+        page = new ArrayList<>(products);
+        for (long id = 1; id <= products; id++) {
+            page.add(new ProductDTO(id, "Product " + id, "Benchmark product number " + id + " with a longer description",
+                    10.0 + id, (int) id % 100, id));
+        }
+        productJson.products(page);
+    }
+
+    @Benchmark
+    public byte[] jackson() throws Exception {
+        return listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] cachedEncodings() {
+        return productJson.products(page);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.services.ProductService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// getProductsByIds at different request sizes, with and without the product cache
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductLookupBenchmark {
+
+    private static final int CATALOG_SIZE = 5_000;
+    private static final int REQUESTS = 64;
+
+    @Param({"1", "10", "100", "500"})
+    private int listSize;
+
+    @Param({"true", "false"})
+    private String cache;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private List<List<Long>> requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start(Map.of("product.cache.enabled", cache));
+        productService = context.getBean(ProductService.class);
+        List<Long> ids = new ArrayList<>(BenchmarkApplication.seed(context, CATALOG_SIZE, 100));
+
+        Random random = new Random(42);
+        requests = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            Collections.shuffle(ids, random);
+            requests.add(List.copyOf(ids.subList(0, listSize)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<ProductDTO> getProductsByIds() throws Exception {
+        next = (next + 1) % REQUESTS;
+        return productService.getProductsByIds(requests.get(next));
+    }
+
+    @Benchmark
+    public ProductDTO getProductDTOById() throws Exception {
+        next = (next + 1) % REQUESTS;
+        return productService.getProductDTOById(requests.get(next).get(0));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.repositories.ProductRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Managed entities copied into DTOs, as the read paths did, against the projections that replaced them.
+// Meant to be run with "-prof gc" to compare the bytes allocated per call (gc.alloc.rate.norm).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductReadPathBenchmark {
+
+    private static final int CATALOG_SIZE = 1_000;
+
+    private ConfigurableApplicationContext context;
+    private ProductRepository productRepository;
+    private List<Long> ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start(Map.of());
+        productRepository = context.getBean(ProductRepository.class);
+        ids = BenchmarkApplication.seed(context, CATALOG_SIZE, 100);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private Long nextId() {
+        next = (next + 1) % CATALOG_SIZE;
+        return ids.get(next);
+    }
+
+    @Benchmark
+    public ProductDTO byIdEntity() {
+        return productRepository.findById(nextId()).map(ProductDTO::new).orElseThrow();
+    }
+
+    @Benchmark
+    public ProductDTO byIdProjection() {
+        return productRepository.findProductDTOById(nextId()).orElseThrow();
+    }
+
+    @Benchmark
+    public Integer stockEntity() {
+        return productRepository.findById(nextId()).orElseThrow().getStock();
+    }
+
+    @Benchmark
+    public Integer stockColumn() {
+        return productRepository.findStockById(nextId()).orElseThrow();
+    }
+
+    @Benchmark
+    public List<ProductDTO> allEntities() {
+        return productRepository.findAll().stream().map(ProductDTO::new).toList();
+    }
+
+    @Benchmark
+    public List<ProductDTO> allProjected() {
+        return productRepository.findAllProductDTOs();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.services.ProductSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Query latency of ProductSearchIndex over a synthetic catalog, from a single word to a short prefix expanding to several words
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProductSearchBenchmark {
+
+    private static final String[] WORDS = {
+            "remera", "buzo", "campera", "pantalon", "zapatilla", "media", "gorra", "mochila", "bolso", "cinturon",
+            "algodon", "lana", "cuero", "jean", "lino", "seda", "negro", "blanco", "rojo", "azul",
+            "verde", "gris", "liso", "estampado", "oversize", "slim", "deportivo", "urbano", "clasico", "basico"
+    };
+
+    @Param({"300000"})
+    private int products;
+
+    @Param({"remera", "remera algodon negro", "re"})
+    private String query;
+
+    private ProductSearchIndex index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        index = new ProductSearchIndex();
+        for (long id = 1; id <= products; id++) {
+            String name = WORDS[random.nextInt(10)] + " " + WORDS[10 + random.nextInt(20)];
+            String description = WORDS[10 + random.nextInt(20)] + " " + WORDS[10 + random.nextInt(20)] + " " + WORDS[random.nextInt(WORDS.length)];
+            index.index(id, name, description, 1.0 + random.nextInt(10_000) / 100.0, random.nextInt(10) > 0);
+        }
+    }
+
+    @Benchmark
+    public List<Long> search() {
+        return index.search(query, null, null, null, 20);
+    }
+
+    @Benchmark
+    public List<Long> searchWithFilters() {
+        return index.search(query, 10.0, 50.0, true, 20);
+    }
+}
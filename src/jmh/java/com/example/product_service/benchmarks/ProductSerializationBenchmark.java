@@ -0,0 +1,53 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.models.ProductEntity;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ProductDTO construction and JSON encoding, for a single product and for a /details sized list
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProductSerializationBenchmark {
+
+    @Param({"1", "100"})
+    private int products;
+
+    private List<ProductEntity> entities;
+    private List<ProductDTO> dtos;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setup() {
+        entities = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            entities.add(new ProductEntity("Product " + i, "Benchmark product number " + i, 10.0 + i, 100));
+        }
+        dtos = entities.stream().map(ProductDTO::new).toList();
+        writer = new ObjectMapper().writer();
+    }
+
+    @Benchmark
+    public List<ProductDTO> constructDTOs() {
+        return entities.stream().map(ProductDTO::new).toList();
+    }
+
+    @Benchmark
+    public byte[] serializeDTOs() throws JsonProcessingException {
+        return writer.writeValueAsBytes(dtos);
+    }
+
+    @Benchmark
+    public byte[] constructAndSerialize() throws JsonProcessingException {
+        return writer.writeValueAsBytes(entities.stream().map(ProductDTO::new).toList());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.exceptions.StockException;
+import com.example.product_service.services.ProductService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// reduceStock and restockProduct running together on the same few products against H2
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StockContentionBenchmark {
+
+    @Param({"1", "16"})
+    private int hotProducts;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start(Map.of());
+        productService = context.getBean(ProductService.class);
+        ids = BenchmarkApplication.seed(context, hotProducts, 1_000_000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("stock")
+    @GroupThreads(6)
+    public boolean reduce() throws Exception {
+        try {
+            productService.reduceStock(pick(), 1);
+            return true;
+        } catch (StockException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("stock")
+    @GroupThreads(2)
+    public void restock() throws Exception {
+        productService.restockProduct(pick(), 1);
+    }
+
+    private Long pick() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
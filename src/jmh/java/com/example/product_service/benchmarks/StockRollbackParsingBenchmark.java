@@ -0,0 +1,87 @@
+package com.example.product_service.benchmarks;
+
+import com.example.product_service.dtos.StockReservation;
+import com.example.product_service.rabbitmq.StockRollback;
+import com.example.product_service.rabbitmq.StockRollbackMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Parse cost per rollback message: the old split based parsing against the formats of StockRollbackMessageConverter
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StockRollbackParsingBenchmark {
+
+    @Param({"1", "20"})
+    private int items;
+
+    private StockRollbackMessageConverter converter;
+    private List<Message> legacy;
+    private Message json;
+    private Message binary;
+
+    @Setup
+    public void setup() {
+        converter = new StockRollbackMessageConverter(new ObjectMapper());
+
+        List<StockReservation> lines = new ArrayList<>();
+        legacy = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            lines.add(new StockReservation(1000L + i, i + 1));
+            legacy.add(new Message((1000L + i + "," + (i + 1)).getBytes(StandardCharsets.UTF_8), new MessageProperties()));
+        }
+
+        StockRollback rollback = new StockRollback(lines);
+        json = converter.toMessage(rollback, new MessageProperties());
+        MessageProperties binaryProperties = new MessageProperties();
+        binaryProperties.setContentType(StockRollbackMessageConverter.BINARY_CONTENT_TYPE);
+        binary = converter.toMessage(rollback, binaryProperties);
+    }
+
+    // What RabbitMQConsumer did before, one message per item
+    @Benchmark
+    public long legacySplit() {
+        long total = 0;
+        for (Message message : legacy) {
+            String[] data = new String(message.getBody(), StandardCharsets.UTF_8).split(",");
+            total += Long.parseLong(data[0].trim()) + Integer.parseInt(data[1].trim());
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long legacyConverter() {
+        long total = 0;
+        for (Message message : legacy) {
+            total += sum(converter.fromMessage(message));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long jsonConverter() {
+        return sum(converter.fromMessage(json));
+    }
+
+    @Benchmark
+    public long binaryConverter() {
+        return sum(converter.fromMessage(binary));
+    }
+
+    private static long sum(StockRollback rollback) {
+        long total = 0;
+        for (StockReservation item : rollback.items()) {
+            total += item.productId() + item.quantity();
+        }
+        return total;
+    }
+}
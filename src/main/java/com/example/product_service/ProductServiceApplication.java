@@ -1,13 +1,18 @@
 package com.example.product_service;
 
-import com.example.product_service.models.ProductEntity;
 import com.example.product_service.repositories.ProductRepository;
+import com.example.product_service.services.ProductImportService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.io.InputStream;
 
 @SpringBootApplication
+@EnableScheduling
 public class ProductServiceApplication {
 
 	public static void main(String[] args) {
@@ -15,23 +20,15 @@ public class ProductServiceApplication {
 	}
 
 	@Bean
-	public CommandLineRunner initData(ProductRepository productRepository) {
+	public CommandLineRunner initData(ProductRepository productRepository, ProductImportService productImportService) {
 		return args -> {
 
-			ProductEntity product = new ProductEntity("Motorolla G9", "Cellphone", 560.50, 8);
-			productRepository.save(product);
-			ProductEntity product1 = new ProductEntity("Ipad Pro", "Tablet", 1500.87, 5);
-			productRepository.save(product1);
-			ProductEntity product2 = new ProductEntity("HP Victus 2024", "NoteBook", 1399.99, 15);
-			productRepository.save(product2);
-			ProductEntity product3 = new ProductEntity("Bose Soundlink Color", "Speaker", 331.90, 4);
-			productRepository.save(product3);
-			ProductEntity product4 = new ProductEntity("Samsung Galaxy S24", "Cellphone", 999.90, 6);
-			productRepository.save(product4);
-			ProductEntity product5 = new ProductEntity("Iphone 16 Pro", "Cellphone", 1999.99, 9);
-			productRepository.save(product5);
-			ProductEntity product6 = new ProductEntity("JBL BoomBox", "Speaker", 800.00, 20);
-			productRepository.save(product6);
+			// With the persistent database the products are only seeded on the first start
+			if (productRepository.count() == 0) {
+				try (InputStream products = new ClassPathResource("data/products.csv").getInputStream()) {
+					productImportService.importProducts(products, ProductImportService.Format.CSV);
+				}
+			}
 
 
 			System.out.println("Product Server Running!");
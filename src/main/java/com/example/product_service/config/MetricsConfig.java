@@ -0,0 +1,35 @@
+package com.example.product_service.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+@Configuration
+public class MetricsConfig {
+
+    // The same few latency buckets for every ProductController mapping, actuator and error requests
+    // keep just count, sum and max
+    @Bean
+    public MeterFilter httpServerRequestsSlo(@Value("${product.metrics.http.slo}") Duration[] slo) {
+        double[] boundaries = Arrays.stream(slo).mapToDouble(Duration::toNanos).toArray();
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                String uri = id.getTag("uri");
+                if (!id.getName().equals("http.server.requests") || uri == null || !uri.startsWith("/api/product")) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .serviceLevelObjectives(boundaries)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
@@ -1,15 +1,28 @@
 package com.example.product_service.config;
 
+import com.example.product_service.rabbitmq.ProductChangeEvent;
+import com.example.product_service.rabbitmq.ProductEventRelay;
+import com.example.product_service.rabbitmq.StockRollbackMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class RabbitMQConfig {
 
     @Bean
     public Queue rollbackQueue() {
-        return new Queue("rollbackStockQueue", false);
+        return new Queue("rollbackStockQueue", true);
     }
 
     @Bean
@@ -21,4 +34,68 @@ public class RabbitMQConfig {
     public Binding rollbackBinding(Queue rollbackQueue, TopicExchange rollbackExchange) {
         return BindingBuilder.bind(rollbackQueue).to(rollbackExchange).with("rollback.stock");
     }
+
+    // Product and stock changes for other services to keep their own copy, routed by product.created,
+    // product.updated, product.stock.changed and product.availability.changed
+    @Bean
+    public TopicExchange productEventsExchange() {
+        return new TopicExchange(ProductEventRelay.EXCHANGE);
+    }
+
+    // Per instance queue, deleted when the instance goes away, see ProductChangeListener
+    @Bean
+    public Queue productChangeQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding productCreatedBinding(Queue productChangeQueue, TopicExchange productEventsExchange) {
+        return BindingBuilder.bind(productChangeQueue).to(productEventsExchange).with(ProductChangeEvent.Type.PRODUCT_CREATED.routingKey());
+    }
+
+    @Bean
+    public Binding productUpdatedBinding(Queue productChangeQueue, TopicExchange productEventsExchange) {
+        return BindingBuilder.bind(productChangeQueue).to(productEventsExchange).with(ProductChangeEvent.Type.PRODUCT_UPDATED.routingKey());
+    }
+
+    @Bean
+    public StockRollbackMessageConverter stockRollbackMessageConverter(ObjectMapper objectMapper) {
+        return new StockRollbackMessageConverter(objectMapper);
+    }
+
+    // Delivers the rollback messages in batches, the batch is acked once the listener returns
+    @Bean
+    public SimpleRabbitListenerContainerFactory rollbackListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            StockRollbackMessageConverter stockRollbackMessageConverter,
+            @Value("${product.rabbitmq.rollback.batch-size:100}") int batchSize,
+            @Value("${product.rabbitmq.rollback.receive-timeout-ms:200}") long receiveTimeout,
+            @Value("${product.rabbitmq.rollback.prefetch:250}") int prefetch,
+            @Value("${product.rabbitmq.rollback.concurrency:1}") int concurrency,
+            @Value("${product.rabbitmq.rollback.max-concurrency:4}") int maxConcurrency,
+            @Value("${product.rabbitmq.rollback.retry.max-attempts:3}") int retryAttempts,
+            @Value("${product.rabbitmq.rollback.retry.initial-interval:1s}") Duration retryInterval,
+            @Value("${product.rabbitmq.rollback.retry.max-interval:10s}") Duration maxRetryInterval) {
+
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(stockRollbackMessageConverter);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchListener(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeout);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(Math.max(concurrency, maxConcurrency));
+        // A batch that keeps failing (the database is down) is requeued after the retries, acking it would lose the rollbacks
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(retryAttempts)
+                .backOffOptions(retryInterval.toMillis(), 2.0, maxRetryInterval.toMillis())
+                .recoverer((MessageBatchRecoverer) (messages, cause) -> {
+                    throw new ImmediateRequeueAmqpException("Requeueing " + messages.size() + " rollback messages", cause);
+                })
+                .build());
+        return factory;
+    }
 }
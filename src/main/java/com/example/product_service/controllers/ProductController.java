@@ -2,48 +2,103 @@ package com.example.product_service.controllers;
 
 import com.example.product_service.dtos.*;
 import com.example.product_service.exceptions.AllBlanksException;
+import com.example.product_service.exceptions.HoldNotFoundException;
 import com.example.product_service.exceptions.NoProductsFoundException;
 import com.example.product_service.exceptions.ProductPriceException;
+import com.example.product_service.exceptions.ProductVersionException;
 import com.example.product_service.exceptions.StockException;
+import com.example.product_service.services.ProductImportService;
+import com.example.product_service.services.ProductJsonCache;
 import com.example.product_service.services.ProductService;
+import com.example.product_service.services.StockHoldService;
 import com.example.product_service.services.TokenDataServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/product")
 public class ProductController {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final String EXPORT_PERMIT = ProductController.class.getName() + ".EXPORT_PERMIT";
+
     @Autowired
     private ProductService productService;
 
     @Autowired
     private TokenDataServiceImpl tokenDataService;
 
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private StockHoldService stockHoldService;
+
+    @Autowired
+    private ProductJsonCache productJson;
+
+    // Exports run on async threads, the concurrency limit filter doesn't see them
+    @Value("${product.export.max-concurrent:4}")
+    private int maxConcurrentExports;
+
+    private Semaphore exportPermits;
+
+    @PostConstruct
+    void createExportPermits() {
+        exportPermits = new Semaphore(maxConcurrentExports);
+    }
+
     @GetMapping("/")
     public ResponseEntity<String> invalidPath() {
         return ResponseEntity.badRequest().body("The url provided is invalid.");
     }
 
     @GetMapping("/{id}")
-    @Operation(summary = "Gets a product data with the id", description = "Receives an id and returns all the data of the specified product.")
+    @Operation(summary = "Gets a product data with the id", description = "Receives an id and returns all the data of the specified product. The ETag header holds the product version, sending it back in If-None-Match returns 304 when the product didn't change.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Data successfully received."),
+            @ApiResponse(responseCode = "304", description = "Product not modified since the sent ETag."),
             @ApiResponse(responseCode = "400", description = "Bad request, invalid id.")
     })
-    public ResponseEntity<?> getProductById(@PathVariable Long id) throws NoProductsFoundException {
+    public ResponseEntity<?> getProductById(@PathVariable Long id, WebRequest request) throws NoProductsFoundException {
 
         try {
             ProductDTO productDTO = productService.getProductDTOById(id);
-            return ResponseEntity.ok(productDTO);
+            String etag = etag(productDTO.getVersion());
+            if (request.checkNotModified(etag)) {
+                // The 304 status and the ETag are already set, the body is skipped
+                return null;
+            }
+            return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(productJson.product(productDTO));
 
         } catch (NoProductsFoundException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
@@ -56,15 +111,29 @@ public class ProductController {
 
 
     @PostMapping("/details")
-    public ResponseEntity<Object> getProductsDetails(@RequestBody List<Long> productIds) throws NoProductsFoundException {
+    @Operation(summary = "Gets the data of several products", description = "Receives a list of ids and returns the products in the same order. With partial=true the products found are returned along with the missing ids instead of failing. The ids can be sent and the products received in CBOR (application/cbor).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Data successfully received."),
+            @ApiResponse(responseCode = "404", description = "At least one product was not found.")
+    })
+    public ResponseEntity<Object> getProductsDetails(@RequestBody List<Long> productIds, @RequestParam(defaultValue = "false") boolean partial,
+                                                     @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws NoProductsFoundException {
         try {
+            boolean cbor = prefersCbor(accept);
+            if (partial) {
+                ProductLookupResult result = productService.findProductsByIds(productIds);
+                return negotiated(cbor, result, () -> productJson.lookup(result));
+            }
             List<ProductDTO> products = productService.getProductsByIds(productIds);
-            return ResponseEntity.ok(products);
+            return negotiated(cbor, products, () -> productJson.products(products));
+        } catch (InvalidMediaTypeException e) {
+            return message("Invalid Accept header: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+
         } catch (NoProductsFoundException e) {
-            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+            return message(e.getMessage(), HttpStatus.NOT_FOUND);
 
         } catch (Exception e) {
-            return new ResponseEntity<>("An error occurred while searching the product data, try again later.", HttpStatus.INTERNAL_SERVER_ERROR);
+            return message("An error occurred while searching the product data, try again later.", HttpStatus.INTERNAL_SERVER_ERROR);
 
         }
 
@@ -72,7 +141,7 @@ public class ProductController {
 
 
     @GetMapping("/stock/{id}")
-    @Operation(summary = "Gets a product stock with the id", description = "Receives an id and returns the specified stock of the product.")
+    @Operation(summary = "Gets a product stock with the id", description = "Receives an id and returns the stock of the product available to sell, without the units held by open checkouts. Returned in CBOR when asked for with Accept: application/cbor.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Data successfully received."),
             @ApiResponse(responseCode = "400", description = "Bad request, invalid id.")
@@ -80,11 +149,11 @@ public class ProductController {
     public ResponseEntity<?> getProductStock(@PathVariable Long id) {
         try {
             Integer stock = productService.getProductStockById(id);
-            return ResponseEntity.ok(stock);
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(stock);
         } catch (NoProductsFoundException e) {
-            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+            return message(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (Exception e) {
-            return new ResponseEntity<>("An error occurred while fetching the product stock.", HttpStatus.INTERNAL_SERVER_ERROR);
+            return message("An error occurred while fetching the product stock.", HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
@@ -112,19 +181,164 @@ public class ProductController {
     }
 
 
+    @PostMapping("/stock/reserve")
+    @Operation(summary = "Reduces the stock of several products at once", description = "Receives a list of product ids and quantities and reduces all the stocks or none of them.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stock successfully reserved."),
+            @ApiResponse(responseCode = "400", description = "Bad request, not enough stock or invalid quantity."),
+            @ApiResponse(responseCode = "404", description = "At least one product was not found.")
+    })
+    public ResponseEntity<?> reserveStock(@RequestBody List<StockReservation> reservations) {
+        try {
+            productService.reserveStock(reservations);
+            return ResponseEntity.ok("Stock reserved successfully.");
+
+        } catch (NoProductsFoundException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+
+        } catch (StockException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error reserving stock.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+
+    @PostMapping("/stock/holds")
+    @Operation(summary = "Holds the stock of several products for a checkout", description = "Receives a list of product ids and quantities and an optional ttlSeconds. The units stop being available to sell until the hold is confirmed, released or expires, all the lines are held or none of them.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Stock successfully held, returns the hold id and its expiry."),
+            @ApiResponse(responseCode = "400", description = "Bad request, not enough stock, invalid quantity or ttl."),
+            @ApiResponse(responseCode = "404", description = "At least one product was not found.")
+    })
+    public ResponseEntity<?> createStockHold(@RequestBody StockHoldRequest request) {
+        try {
+            StockHold hold = stockHoldService.createHold(request.items(), request.ttlSeconds());
+            return new ResponseEntity<>(hold, HttpStatus.CREATED);
+
+        } catch (NoProductsFoundException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+
+        } catch (StockException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error holding stock.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+
+    @PostMapping("/stock/holds/{holdId}/confirm")
+    @Operation(summary = "Confirms a stock hold", description = "Takes the held units from the stock, the hold has to be confirmed before it expires.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Hold successfully confirmed."),
+            @ApiResponse(responseCode = "400", description = "The stock was lowered below the held units."),
+            @ApiResponse(responseCode = "404", description = "The hold was not found, was already confirmed or released, or expired.")
+    })
+    public ResponseEntity<?> confirmStockHold(@PathVariable String holdId) {
+        try {
+            stockHoldService.confirmHold(holdId);
+            return ResponseEntity.ok("Hold confirmed successfully.");
+
+        } catch (HoldNotFoundException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+
+        } catch (StockException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error confirming the hold.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+
+    @DeleteMapping("/stock/holds/{holdId}")
+    @Operation(summary = "Releases a stock hold", description = "Makes the held units available to sell again.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Hold successfully released."),
+            @ApiResponse(responseCode = "404", description = "The hold was not found, was already confirmed or released, or expired.")
+    })
+    public ResponseEntity<?> releaseStockHold(@PathVariable String holdId) {
+        try {
+            stockHoldService.releaseHold(holdId);
+            return ResponseEntity.ok("Hold released successfully.");
+
+        } catch (HoldNotFoundException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error releasing the hold.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+
     @GetMapping("/products")
-    @Operation(summary = "Gets all the products", description = "Returns all the products.")
+    @Operation(summary = "Gets all the products", description = "Returns all the products, or a page of them when 'after', 'size' or any filter is sent. Can be filtered by availability, price range and description. Each page returns the cursor for the next one.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Data successfully received."),
             @ApiResponse(responseCode = "400", description = "Bad request, pool product empty.")
     })
-    public ResponseEntity<?> getAllProducts() throws NoProductsFoundException {
+    public ResponseEntity<?> getAllProducts(@RequestParam(required = false) Long after,
+                                            @RequestParam(required = false) Integer size,
+                                            @RequestParam(required = false) Boolean available,
+                                            @RequestParam(required = false) Double minPrice,
+                                            @RequestParam(required = false) Double maxPrice,
+                                            @RequestParam(required = false) String description,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws NoProductsFoundException {
 
         try {
-            return ResponseEntity.ok(productService.getAllProducts());
+            boolean cbor = prefersCbor(accept);
+            ProductFilter filter = new ProductFilter(available, minPrice, maxPrice, description);
+            if (after != null || size != null || !filter.isEmpty()) {
+                int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+                if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+                    return message("The page size must be between 1 and " + MAX_PAGE_SIZE + ".", HttpStatus.BAD_REQUEST);
+                }
+                if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+                    return message("The min price can't be greater than the max price.", HttpStatus.BAD_REQUEST);
+                }
+                ProductPage page = productService.getProductsPage(filter, after, pageSize);
+                return negotiated(cbor, page, () -> productJson.page(page));
+            }
+
+            // The whole catalog would only churn the cached encodings, the converter writes it to the response as it goes
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(productService.getAllProducts());
+
+        } catch (InvalidMediaTypeException e) {
+            return message("Invalid Accept header: " + e.getMessage(), HttpStatus.BAD_REQUEST);
 
         } catch (NoProductsFoundException e) {
-            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+            return message(e.getMessage(), HttpStatus.NOT_FOUND);
+
+        } catch (Exception e) {
+            return message("An error occurred while searching the products data, try again later.", HttpStatus.INTERNAL_SERVER_ERROR);
+
+        }
+    }
+
+
+    @GetMapping("/search")
+    @Operation(summary = "Searches products", description = "Matches the words of 'q' against the start of the words in the product name and description, ranked by relevance. Can be filtered by price range and availability.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Search successfully done."),
+            @ApiResponse(responseCode = "400", description = "Bad request, invalid filters.")
+    })
+    public ResponseEntity<?> searchProducts(@RequestParam(defaultValue = "") String q,
+                                            @RequestParam(required = false) Double minPrice,
+                                            @RequestParam(required = false) Double maxPrice,
+                                            @RequestParam(required = false) Boolean available,
+                                            @RequestParam(defaultValue = "" + DEFAULT_SEARCH_LIMIT) int limit) {
+
+        try {
+            if (limit <= 0 || limit > MAX_SEARCH_LIMIT) {
+                return ResponseEntity.badRequest().body("The limit must be between 1 and " + MAX_SEARCH_LIMIT + ".");
+            }
+            if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+                return ResponseEntity.badRequest().body("The min price can't be greater than the max price.");
+            }
+
+            return json(productJson.products(productService.searchProducts(q, minPrice, maxPrice, available, limit)));
 
         } catch (Exception e) {
             return new ResponseEntity<>("An error occurred while searching the products data, try again later.", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -133,6 +347,45 @@ public class ProductController {
     }
 
 
+    @GetMapping(value = "/products/stream", produces = "application/x-ndjson")
+    @Operation(summary = "Streams all the products", description = "Writes every product as one JSON object per line while reading them from the database.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Data successfully streamed."),
+            @ApiResponse(responseCode = "503", description = "Too many exports running.")
+    })
+    public ResponseEntity<StreamingResponseBody> streamAllProducts(HttpServletRequest request) {
+        if (!exportPermits.tryAcquire()) {
+            byte[] message = "Too many exports running, try again later.".getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).contentType(MediaType.TEXT_PLAIN)
+                    .body(outputStream -> outputStream.write(message));
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                exportPermits.release();
+            }
+        };
+        // The body never runs when the client goes away before streaming starts, the async request still
+        // completes or times out
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(EXPORT_PERMIT, new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                release.run();
+            }
+        });
+        StreamingResponseBody body = outputStream -> {
+            try {
+                productService.streamAllProducts(outputStream);
+            } finally {
+                release.run();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+
     @PostMapping("/products")
     @Operation(summary = "Creates a new product", description = "Receives a name, description, price, stock and creates a new product.")
     @ApiResponses(value = {
@@ -163,14 +416,49 @@ public class ProductController {
     }
 
 
+    @PostMapping(value = "/products/import", consumes = {"text/csv", "application/x-ndjson"})
+    @Operation(summary = "Imports products", description = "Creates or updates (matched by name) the products of a CSV body, with a name,productdescription,productprice,stock header, or of an NDJSON body. Invalid rows are skipped and reported with their line number.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import done, the report lists the rejected rows."),
+            @ApiResponse(responseCode = "400", description = "Bad request, invalid CSV header."),
+            @ApiResponse(responseCode = "403", description = "Unauthorized to import products.")
+    })
+    public ResponseEntity<?> importProducts(InputStream body, @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, HttpServletRequest request) {
+
+        try {
+
+            String authenticatedUserRole = tokenDataService.getRole(request);
+
+            if (!authenticatedUserRole.equals("ADMIN")) {
+                return new ResponseEntity<>("Forbidden: You cannot access this data.", HttpStatus.FORBIDDEN);
+            }
+
+            ProductImportService.Format format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType("application/x-ndjson"))
+                    ? ProductImportService.Format.NDJSON
+                    : ProductImportService.Format.CSV;
+            return ResponseEntity.ok(productImportService.importProducts(body, format));
+
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+
+        } catch (Exception e) {
+            return new ResponseEntity<>("An error occurred while importing the products, try again later.", HttpStatus.INTERNAL_SERVER_ERROR);
+
+        }
+    }
+
+
     @PutMapping("products/{id}")
-    @Operation(summary = "Updates a product with the id", description = "Receives an id and updates all or independent product data.")
+    @Operation(summary = "Updates a product with the id", description = "Receives an id and updates all or independent product data. With an If-Match header the product is only updated when its version matches the ETag.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Product successfully created."),
             @ApiResponse(responseCode = "403", description = "Unauthorized to update product."),
-            @ApiResponse(responseCode = "409", description = "Bad request, invalid data.")
+            @ApiResponse(responseCode = "409", description = "Bad request, invalid data or the product was modified while updating it."),
+            @ApiResponse(responseCode = "412", description = "The product version doesn't match the If-Match header.")
     })
-    public ResponseEntity<?> updateProductById(@RequestBody UpdateProduct updateProduct, @PathVariable Long id, HttpServletRequest request) throws Exception {
+    public ResponseEntity<?> updateProductById(@RequestBody UpdateProduct updateProduct, @PathVariable Long id,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                               HttpServletRequest request) throws Exception {
 
         try {
 
@@ -180,12 +468,15 @@ public class ProductController {
                 return new ResponseEntity<>("Forbidden: You cannot access this data.", HttpStatus.FORBIDDEN);
             }
 
-            ProductAdminDTO updatedProduct = productService.updateProductById(updateProduct, id);
-            return ResponseEntity.status(HttpStatus.CREATED).body(updatedProduct);
+            ProductAdminDTO updatedProduct = productService.updateProductById(updateProduct, id, ifMatchVersions(ifMatch));
+            return ResponseEntity.status(HttpStatus.CREATED).eTag(etag(updatedProduct.getVersion())).body(updatedProduct);
 
         } catch (NoProductsFoundException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
 
+        } catch (ProductVersionException e) {
+            return new ResponseEntity<>(e.getMessage(), ifMatch == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED);
+
         } catch (AllBlanksException | ProductPriceException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
 
@@ -195,6 +486,70 @@ public class ProductController {
         }
     }
 
+
+    // Products are written from their encoded JSON, see ProductJsonCache
+    private static ResponseEntity<Object> json(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Errors of the endpoints that can answer in CBOR are always plain text, otherwise the message would be
+    // written as is under the negotiated binary content type
+    private static ResponseEntity<Object> message(String message, HttpStatus status) {
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN).body(message);
+    }
+
+    // The body depends on Accept, so shared caches have to keep the CBOR and JSON responses apart
+    private static ResponseEntity<Object> negotiated(boolean cbor, Object body, Supplier<byte[]> json) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+        return cbor ? response.body(body) : response.contentType(MediaType.APPLICATION_JSON).body(json.get());
+    }
+
+    // Whether CBOR is the encoding the caller prefers, the way the message converters would pick it: the
+    // highest quality wins, then the more specific type, and a wildcard gets JSON. Callers preferring CBOR get
+    // the objects encoded by the negotiated converter, everyone else keeps the cached JSON.
+    // A malformed header throws InvalidMediaTypeException.
+    private static boolean prefersCbor(String accept) {
+        if (accept == null || !accept.contains("cbor")) {
+            return false;
+        }
+        MediaType preferred = null;
+        for (MediaType type : MediaType.parseMediaTypes(accept)) {
+            if (type.getQualityValue() == 0 || !(type.includes(MediaType.APPLICATION_JSON) || type.includes(MediaType.APPLICATION_CBOR))) {
+                continue;
+            }
+            if (preferred == null || type.getQualityValue() > preferred.getQualityValue()
+                    || (type.getQualityValue() == preferred.getQualityValue() && type.isConcrete() && !preferred.isConcrete())) {
+                preferred = type;
+            }
+        }
+        return preferred != null && preferred.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR);
+    }
+
+    private static String etag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    // Versions named by the strong tags of an If-Match header, null when there is none or it matches any version ("*").
+    // Weak tags never match, so a header with only weak or unknown tags gives an empty set.
+    static Set<Long> ifMatchVersions(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+                continue;
+            }
+            try {
+                versions.add(Long.valueOf(tag.substring(1, tag.length() - 1)));
+            } catch (NumberFormatException e) {
+                // Not one of our ETags, it can't match any version
+            }
+        }
+        return versions;
+    }
+
 }
 
 //    @GetMapping("/name/{id}")
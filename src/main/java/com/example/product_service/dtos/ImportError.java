@@ -0,0 +1,3 @@
+package com.example.product_service.dtos;
+
+public record ImportError(long line, String message) { }
@@ -0,0 +1,6 @@
+package com.example.product_service.dtos;
+
+import java.util.List;
+
+// Only the first errors are listed, errorsTruncated tells when there were more
+public record ImportReport(long rows, long created, long updated, long rejected, List<ImportError> errors, boolean errorsTruncated) { }
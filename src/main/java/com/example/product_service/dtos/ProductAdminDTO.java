@@ -1,6 +1,7 @@
 package com.example.product_service.dtos;
 
 import com.example.product_service.models.ProductEntity;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 public class ProductAdminDTO {
 
@@ -8,15 +9,27 @@ public class ProductAdminDTO {
     private String name, productdescription;
     private Double productprice;
     private Integer stock;
+    private int reserved;
     private boolean availability;
 
+    // Only used for the ETag header
+    @JsonIgnore
+    private Long version;
+
     public ProductAdminDTO(ProductEntity product) {
         id = product.getId();
         name = product.getName();
         productdescription = product.getProductdescription();
         productprice = product.getProductprice();
         stock = product.getStock();
+        reserved = product.getReserved();
         availability = product.isAvailable();
+        version = product.getVersion();
+    }
+
+    @JsonIgnore
+    public Long getVersion() {
+        return version;
     }
 
     public Long getId() {
@@ -39,6 +52,10 @@ public class ProductAdminDTO {
         return stock;
     }
 
+    public int getReserved() {
+        return reserved;
+    }
+
     public boolean getAvailability() {
         return availability;
     }
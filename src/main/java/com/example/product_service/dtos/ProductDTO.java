@@ -1,6 +1,7 @@
 package com.example.product_service.dtos;
 
 import com.example.product_service.models.ProductEntity;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 public class ProductDTO {
 
@@ -9,12 +10,26 @@ public class ProductDTO {
     private Double productprice;
     private Integer stock;
 
+    // Only used for the ETag header
+    @JsonIgnore
+    private Long version;
+
     public ProductDTO(ProductEntity product) {
         id = product.getId();
         name = product.getName();
         productdescription = product.getProductdescription();
         productprice = product.getProductprice();
-        stock = product.getStock();
+        stock = product.getAvailableStock();
+        version = product.getVersion();
+    }
+
+    public ProductDTO(Long id, String name, String productdescription, Double productprice, Integer stock, Long version) {
+        this.id = id;
+        this.name = name;
+        this.productdescription = productdescription;
+        this.productprice = productprice;
+        this.stock = stock;
+        this.version = version;
     }
 
     public Long getId() {
@@ -36,4 +51,9 @@ public class ProductDTO {
     public Integer getStock() {
         return stock;
     }
+
+    @JsonIgnore
+    public Long getVersion() {
+        return version;
+    }
 }
@@ -0,0 +1,11 @@
+package com.example.product_service.dtos;
+
+// Null fields aren't filtered on
+public record ProductFilter(Boolean available, Double minPrice, Double maxPrice, String description) {
+
+    public static final ProductFilter NONE = new ProductFilter(null, null, null, null);
+
+    public boolean isEmpty() {
+        return available == null && minPrice == null && maxPrice == null && (description == null || description.isBlank());
+    }
+}
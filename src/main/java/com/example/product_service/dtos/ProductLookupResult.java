@@ -0,0 +1,5 @@
+package com.example.product_service.dtos;
+
+import java.util.List;
+
+public record ProductLookupResult(List<ProductDTO> products, List<Long> missingIds) { }
@@ -0,0 +1,6 @@
+package com.example.product_service.dtos;
+
+import java.util.List;
+
+// nextCursor is the "after" value for the next page, null on the last one
+public record ProductPage(List<ProductDTO> products, Long nextCursor) { }
@@ -0,0 +1,10 @@
+package com.example.product_service.dtos;
+
+public interface ProductStockView {
+
+    Long getId();
+
+    Integer getStock();
+
+    Long getVersion();
+}
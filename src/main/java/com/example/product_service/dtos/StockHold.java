@@ -0,0 +1,6 @@
+package com.example.product_service.dtos;
+
+import java.time.Instant;
+import java.util.List;
+
+public record StockHold(String holdId, Instant expiresAt, List<StockReservation> items) { }
@@ -0,0 +1,6 @@
+package com.example.product_service.dtos;
+
+import java.util.List;
+
+// ttlSeconds is optional, product.holds.ttl is used when it's missing
+public record StockHoldRequest(List<StockReservation> items, Long ttlSeconds) { }
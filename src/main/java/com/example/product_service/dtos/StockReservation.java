@@ -0,0 +1,3 @@
+package com.example.product_service.dtos;
+
+public record StockReservation(Long productId, Integer quantity) { }
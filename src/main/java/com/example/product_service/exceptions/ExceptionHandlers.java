@@ -21,6 +21,11 @@ public class ExceptionHandlers {
         return new ResponseEntity<>(productPriceException.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(HoldNotFoundException.class)
+    public ResponseEntity<String> productExceptionHandler(HoldNotFoundException holdNotFoundException){
+        return new ResponseEntity<>(holdNotFoundException.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
     @ExceptionHandler(StockException.class)
     public ResponseEntity<String> productExceptionHandler(StockException stockException){
         return new ResponseEntity<>(stockException.getMessage(), HttpStatus.BAD_REQUEST);
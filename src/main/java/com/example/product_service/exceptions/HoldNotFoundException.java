@@ -0,0 +1,7 @@
+package com.example.product_service.exceptions;
+
+public class HoldNotFoundException extends Exception {
+    public HoldNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,8 @@
 package com.example.product_service.exceptions;
 
 public class NoProductsFoundException extends Exception {
+    // Thrown for every unknown id and always answered with the message, the stack trace is never used
     public NoProductsFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
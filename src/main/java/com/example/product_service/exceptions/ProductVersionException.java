@@ -0,0 +1,7 @@
+package com.example.product_service.exceptions;
+
+public class ProductVersionException extends Exception {
+    public ProductVersionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.product_service.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+
+import java.time.Instant;
+
+// Product change events waiting to be published, written in the same transaction as the change.
+// Rows are inserted and deleted with plain JDBC, the entity only defines the table.
+@Entity
+public class OutboxEventEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String eventType;
+
+    private Long productId;
+
+    @Column(length = 2000)
+    private String payload;
+
+    private Instant createdAt;
+
+    public OutboxEventEntity() { }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.product_service.models;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import java.time.Instant;
+
+@Entity
+public class ProcessedMessageEntity {
+
+    @Id
+    private String messageKey;
+
+    private Instant processedAt;
+
+    public ProcessedMessageEntity() { }
+
+    public ProcessedMessageEntity(String messageKey, Instant processedAt) {
+        this.messageKey = messageKey;
+        this.processedAt = processedAt;
+    }
+
+    public String getMessageKey() {
+        return messageKey;
+    }
+
+    public Instant getProcessedAt() {
+        return processedAt;
+    }
+}
@@ -1,15 +1,31 @@
 package com.example.product_service.models;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
+@Table(indexes = {
+        // Available-only listings, keyset paged by id
+        @Index(name = "idx_product_available_id", columnList = "available, id"),
+        @Index(name = "idx_product_available_price", columnList = "available, productprice"),
+        @Index(name = "idx_product_price", columnList = "productprice"),
+        // Imports match existing products by name
+        @Index(name = "idx_product_name", columnList = "name")
+})
 public class ProductEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Ids are taken from the sequence 50 at a time, unlike IDENTITY this lets Hibernate batch the inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     private Long id;
 
     private String name, productdescription;
@@ -17,6 +33,15 @@ public class ProductEntity {
     private Integer stock;
     private boolean available = true;
 
+    // Stock held by open checkouts (StockHoldEntity), available to sell is stock - reserved
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int reserved;
+
+    // Bumped on every change, also by the conditional stock updates
+    @Version
+    private Long version;
+
     public ProductEntity() { }
 
     public ProductEntity(String name, String productdescription, Double productprice, Integer stock) {
@@ -31,6 +56,23 @@ public class ProductEntity {
         return id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public int getReserved() {
+        return reserved;
+    }
+
+    public int getAvailableStock() {
+        return getStock() - reserved;
+    }
+
+    // Stock set from outside (updates, imports) is the stock to sell, the units held by open checkouts stay on top
+    public void setAvailableStock(int available) {
+        this.stock = reserved + available;
+    }
+
     public String getName() {
         return name;
     }
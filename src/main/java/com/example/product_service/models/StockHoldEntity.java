@@ -0,0 +1,61 @@
+package com.example.product_service.models;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+// One line of a stock hold, the lines of a hold share its holdId and expiry.
+// The row only exists while the hold is open, confirming, releasing or expiring it deletes the lines.
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_stock_hold_hold_id", columnList = "holdId"),
+        // The expiry sweep reads the oldest holds first
+        @Index(name = "idx_stock_hold_expires_at", columnList = "expiresAt, id")
+})
+public class StockHoldEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_hold_seq")
+    @SequenceGenerator(name = "stock_hold_seq", sequenceName = "stock_hold_seq", allocationSize = 50)
+    private Long id;
+
+    private String holdId;
+    private Long productId;
+    private Integer quantity;
+    private Instant expiresAt;
+
+    public StockHoldEntity() { }
+
+    public StockHoldEntity(String holdId, Long productId, Integer quantity, Instant expiresAt) {
+        this.holdId = holdId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getHoldId() {
+        return holdId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.product_service.rabbitmq;
+
+import com.example.product_service.models.ProcessedMessageEntity;
+import com.example.product_service.repositories.ProcessedMessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Remembers the idempotency keys processed during the last window so redelivered messages are dropped.
+// The persisted table also covers redeliveries after a restart.
+@Component
+public class MessageDeduplicator {
+
+    private final Duration window;
+    private final Cache<String, Boolean> recentKeys;
+
+    @Value("${product.rabbitmq.dedup.persistent:false}")
+    private boolean persistent;
+
+    @Autowired
+    private ProcessedMessageRepository processedMessageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public MessageDeduplicator(@Value("${product.rabbitmq.dedup.window:10m}") Duration window,
+                               @Value("${product.rabbitmq.dedup.maximum-size:100000}") long maximumSize) {
+        this.window = window;
+        this.recentKeys = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    // Returns the keys that weren't seen before, they are claimed so a concurrent consumer drops them
+    public Set<String> claim(Collection<String> keys) {
+        Set<String> claimed = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (recentKeys.asMap().putIfAbsent(key, Boolean.TRUE) == null) {
+                claimed.add(key);
+            }
+        }
+
+        if (persistent && !claimed.isEmpty()) {
+            try {
+                for (ProcessedMessageEntity processed : processedMessageRepository.findAllById(claimed)) {
+                    claimed.remove(processed.getMessageKey());
+                }
+            } catch (RuntimeException e) {
+                release(claimed);
+                throw e;
+            }
+        }
+        return claimed;
+    }
+
+    // Gives back claimed keys whose messages weren't applied, so their redelivery is processed
+    public void release(Collection<String> keys) {
+        recentKeys.invalidateAll(keys);
+    }
+
+    // Has to run in the same transaction that applies the messages, before touching the stock. Fails with a
+    // DuplicateKeyException when another consumer already recorded one of the keys.
+    public void recordProcessed(Collection<String> keys) {
+        if (!persistent || keys.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> batch = keys.stream()
+                .map(key -> new Object[]{key, now})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO processed_message_entity (message_key, processed_at) VALUES (?, ?)", batch);
+    }
+
+    @Scheduled(fixedDelayString = "${product.rabbitmq.dedup.cleanup-interval-ms:60000}")
+    public void purgeExpired() {
+        if (persistent) {
+            processedMessageRepository.deleteProcessedBefore(Instant.now().minus(window));
+        }
+    }
+}
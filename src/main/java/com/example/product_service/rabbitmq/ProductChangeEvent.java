@@ -0,0 +1,55 @@
+package com.example.product_service.rabbitmq;
+
+import com.example.product_service.dtos.ProductStockView;
+import com.example.product_service.models.ProductEntity;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+// Stock events only carry the stock, the other events the whole product. The stock is the one available to sell. Consumers can drop an event
+// whose version is older than the one they already have.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductChangeEvent(Type type, Long productId, Long version, String name, String productdescription,
+                                 Double productprice, Integer stock, Boolean available, Instant occurredAt) {
+
+    public enum Type {
+        PRODUCT_CREATED("product.created"),
+        PRODUCT_UPDATED("product.updated"),
+        STOCK_CHANGED("product.stock.changed"),
+        AVAILABILITY_CHANGED("product.availability.changed");
+
+        private final String routingKey;
+
+        Type(String routingKey) {
+            this.routingKey = routingKey;
+        }
+
+        public String routingKey() {
+            return routingKey;
+        }
+    }
+
+    public static ProductChangeEvent created(ProductEntity product) {
+        return of(Type.PRODUCT_CREATED, product);
+    }
+
+    public static ProductChangeEvent updated(ProductEntity product) {
+        return of(Type.PRODUCT_UPDATED, product);
+    }
+
+    public static ProductChangeEvent availabilityChanged(ProductEntity product) {
+        return new ProductChangeEvent(Type.AVAILABILITY_CHANGED, product.getId(), product.getVersion(),
+                null, null, null, null, product.isAvailable(), Instant.now());
+    }
+
+    public static ProductChangeEvent stockChanged(ProductStockView stock) {
+        return new ProductChangeEvent(Type.STOCK_CHANGED, stock.getId(), stock.getVersion(),
+                null, null, null, stock.getStock(), null, Instant.now());
+    }
+
+    private static ProductChangeEvent of(Type type, ProductEntity product) {
+        return new ProductChangeEvent(type, product.getId(), product.getVersion(), product.getName(),
+                product.getProductdescription(), product.getProductprice(), product.getAvailableStock(),
+                product.isAvailable(), Instant.now());
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.product_service.rabbitmq;
+
+import com.example.product_service.services.ProductCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+// The product cache is local to each instance, only the one changing a product evicts it on commit.
+// Every instance gets the product.created and product.updated events on its own queue and evicts the product too,
+// so new products stop being missing and renames or price changes show up before the catalog ttl.
+@Component
+public class ProductChangeListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductChangeListener.class);
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @RabbitListener(queues = "#{productChangeQueue.name}")
+    public void productChanged(Message message) {
+        try {
+            JsonNode event = objectMapper.readTree(message.getBody());
+            if (event.hasNonNull("productId")) {
+                productCache.evict(event.get("productId").asLong());
+            }
+        } catch (IOException e) {
+            logger.warn("Invalid product change event: {}", e.getMessage());
+        }
+    }
+}
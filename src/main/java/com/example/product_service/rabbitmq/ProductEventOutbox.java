@@ -0,0 +1,75 @@
+package com.example.product_service.rabbitmq;
+
+import com.example.product_service.dtos.ProductStockView;
+import com.example.product_service.repositories.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Events are stored with the change that caused them and published later by ProductEventRelay,
+// so a rolled back change never publishes and a committed one is never lost when the broker is down.
+@Component
+public class ProductEventOutbox {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${product.lookup.chunk-size:500}")
+    private int lookupChunkSize;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(ProductChangeEvent event) {
+        recordAll(List.of(event));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(List<ProductChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> batch = new ArrayList<>(events.size());
+        for (ProductChangeEvent event : events) {
+            batch.add(new Object[]{event.type().name(), event.productId(), toJson(event), now});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO outbox_event_entity (event_type, product_id, payload, created_at) VALUES (?, ?, ?, ?)", batch);
+    }
+
+    // Stock events carry the stock and version after the change, read back in the same transaction.
+    // Returns what was read so callers can reuse it once the transaction commits.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<ProductStockView> recordStockChanges(List<Long> productIds) {
+        List<ProductStockView> stocks = new ArrayList<>(productIds.size());
+        for (int from = 0; from < productIds.size(); from += lookupChunkSize) {
+            List<Long> chunk = productIds.subList(from, Math.min(from + lookupChunkSize, productIds.size()));
+            stocks.addAll(productRepository.findStocksByIdIn(chunk));
+        }
+        recordAll(stocks.stream().map(ProductChangeEvent::stockChanged).toList());
+        return stocks;
+    }
+
+    private String toJson(ProductChangeEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the event of product " + event.productId(), e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.product_service.rabbitmq;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+// Publishes the outbox to the product events exchange in id order. A batch is only deleted once the broker
+// confirmed all of it, so after a failure events can be published again but never lost.
+// Instances sharing the database claim their batch with row locks held until it's deleted, the others skip
+// the locked rows, so each event is published by one relay.
+@Component
+@ConditionalOnProperty(name = "product.events.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductEventRelay {
+
+    public static final String EXCHANGE = "productEventsExchange";
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductEventRelay.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${product.events.relay.batch-size:200}")
+    private int batchSize;
+
+    @Value("${product.events.relay.confirm-timeout-ms:5000}")
+    private long confirmTimeout;
+
+    private Counter published;
+    private Counter failedBatches;
+
+    @PostConstruct
+    void registerMetrics() {
+        published = Counter.builder("product.events.published").register(meterRegistry);
+        failedBatches = Counter.builder("product.events.failed.batches").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${product.events.relay.interval-ms:500}",
+            initialDelayString = "${product.events.relay.initial-delay-ms:5000}")
+    public void relay() {
+        // Keeps going while there is a backlog, a failed batch waits for the next run
+        int relayed;
+        do {
+            relayed = relayBatch();
+        } while (relayed == batchSize);
+    }
+
+    public int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> publishClaimedBatch());
+        return relayed == null ? 0 : relayed;
+    }
+
+    private int publishClaimedBatch() {
+        List<OutboxRow> rows = jdbcTemplate.query(
+                "SELECT id, event_type, payload, created_at FROM outbox_event_entity ORDER BY id FETCH FIRST ? ROWS ONLY FOR UPDATE SKIP LOCKED",
+                (rs, rowNum) -> new OutboxRow(rs.getLong("id"), rs.getString("event_type"), rs.getString("payload"),
+                        rs.getTimestamp("created_at")),
+                batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (OutboxRow row : rows) {
+                    operations.send(EXCHANGE, ProductChangeEvent.Type.valueOf(row.eventType()).routingKey(), row.toMessage());
+                }
+                operations.waitForConfirmsOrDie(confirmTimeout);
+                return null;
+            });
+        } catch (AmqpException e) {
+            failedBatches.increment();
+            logger.warn("Could not publish {} product events, retrying on the next run: {}", rows.size(), e.getMessage());
+            return 0;
+        }
+
+        // Deleted by id, generated ids can commit out of order so a lower id may still show up later
+        List<Object[]> ids = new ArrayList<>(rows.size());
+        rows.forEach(row -> ids.add(new Object[]{row.id()}));
+        jdbcTemplate.batchUpdate("DELETE FROM outbox_event_entity WHERE id = ?", ids);
+        published.increment(rows.size());
+        return rows.size();
+    }
+
+    private record OutboxRow(long id, String eventType, String payload, Timestamp createdAt) {
+
+        // The message id stays the same when a batch is published again, consumers can use it to drop duplicates
+        Message toMessage() {
+            return MessageBuilder.withBody(payload.getBytes(StandardCharsets.UTF_8))
+                    .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                    .setContentEncoding(StandardCharsets.UTF_8.name())
+                    .setMessageId("product-event-" + id)
+                    .setTimestamp(createdAt)
+                    .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                    .build();
+        }
+    }
+}
@@ -1,71 +1,255 @@
 package com.example.product_service.rabbitmq;
 
+import com.example.product_service.dtos.StockReservation;
+import com.example.product_service.exceptions.NoProductsFoundException;
+import com.example.product_service.repositories.ProductRepository;
 import com.example.product_service.services.ProductService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.QueueInformation;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConversionException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class RabbitMQConsumer {
 
+    private static final String ROLLBACK_QUEUE = "rollbackStockQueue";
+    private static final String IDEMPOTENCY_KEY_HEADER = "x-idempotency-key";
+
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MessageDeduplicator deduplicator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StockRollbackMessageConverter messageConverter;
+
     private static final Logger logger = LoggerFactory.getLogger(RabbitMQConsumer.class);
 
-    @RabbitListener(queues = "rollbackStockQueue")
-    public void rollbackStock(String message) {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    private final AtomicLong queueDepth = new AtomicLong();
+    private Timer batchTimer;
+    private Timer lagTimer;
+    private DistributionSummary batchSize;
+    private Counter duplicateMessages;
+    private Counter invalidMessages;
+
+    @PostConstruct
+    void registerMetrics() {
+        batchTimer = Timer.builder("product.rollback.batch")
+                .description("Time to apply a batch of rollback messages")
+                .register(meterRegistry);
+        lagTimer = Timer.builder("product.rollback.lag")
+                .description("Time between a rollback being published and consumed, for messages with a timestamp")
+                .register(meterRegistry);
+        batchSize = DistributionSummary.builder("product.rollback.batch.size")
+                .description("Messages received per batch")
+                .register(meterRegistry);
+        duplicateMessages = Counter.builder("product.rollback.messages.dropped").tag("reason", "duplicate").register(meterRegistry);
+        invalidMessages = Counter.builder("product.rollback.messages.dropped").tag("reason", "invalid").register(meterRegistry);
+        Gauge.builder("product.rollback.queue.depth", queueDepth, AtomicLong::get)
+                .description("Messages waiting in rollbackStockQueue at the last check")
+                .register(meterRegistry);
+    }
+
+    // Asking the broker on every scrape would make the metrics endpoint depend on it
+    @Scheduled(fixedDelayString = "${product.rabbitmq.rollback.depth-check-interval-ms:15000}")
+    public void refreshQueueDepth() {
         try {
-            // Log the incoming message to check its format
-            logger.info("Received message: {}", message);
-
-            // Check if the message is in the expected format "productId,quantity"
-            if (message != null && !message.isEmpty()) {
-                String[] data = message.split(",");
-
-                // Ensure the message has exactly two parts (productId and quantity)
-                if (data.length == 2) {
-                    Long productId = parseLongSafely(data[0].trim());
-                    Integer quantity = parseIntegerSafely(data[1].trim());
-
-                    // Proceed with stock rollback logic
-                    if (productId != null && quantity != null) {
-                        logger.info("Reverting stock for product ID: {}, quantity: {}", productId, quantity);
-                        productService.restockProduct(productId, quantity);
-                        logger.info("Stock successfully reverted for product ID: {} with quantity: {}", productId, quantity);
-                    } else {
-                        logger.error("Invalid data in the message. Product ID: {}, Quantity: {}", data[0], data[1]);
-                    }
-                } else {
-                    logger.error("Invalid message format. Expected format: 'productId,quantity', received: {}", message);
-                }
-            } else {
-                logger.error("Received empty or null message.");
+            QueueInformation queue = amqpAdmin.getQueueInfo(ROLLBACK_QUEUE);
+            if (queue != null) {
+                queueDepth.set(queue.getMessageCount());
             }
         } catch (Exception e) {
-            logger.error("Error processing the rollback stock message: {}", message, e);
+            logger.debug("Could not read the depth of {}: {}", ROLLBACK_QUEUE, e.getMessage());
         }
     }
 
-    // Safe parsing for Long
-    private Long parseLongSafely(String value) {
+    @RabbitListener(queues = ROLLBACK_QUEUE, containerFactory = "rollbackListenerContainerFactory")
+    public void rollbackStock(List<Message> messages) {
+        batchSize.record(messages.size());
+        batchTimer.record(() -> applyRollbacks(messages));
+    }
+
+    private void applyRollbacks(List<Message> messages) {
+        recordLag(messages);
+        Set<String> claimedKeys = deduplicator.claim(messages.stream()
+                .map(RabbitMQConsumer::idempotencyKey)
+                .filter(Objects::nonNull)
+                .toList());
+        // Claimed keys not applied by the time this returns or throws are released, otherwise the
+        // redelivery of a failed batch would be dropped as a duplicate
+        Set<String> unapplied = new HashSet<>(claimedKeys);
         try {
-            return Long.parseLong(value);
-        } catch (NumberFormatException e) {
-            logger.error("Invalid number format for product ID: {}", value);
-            return null;
+            List<Rollback> rollbacks = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                String key = idempotencyKey(message);
+                if (key != null && !claimedKeys.remove(key)) {
+                    duplicateMessages.increment();
+                    logger.debug("Dropping already processed message with key: {}", key);
+                    continue;
+                }
+                Map<Long, Integer> restocks = new HashMap<>();
+                parseRollback(message, restocks);
+                rollbacks.add(new Rollback(key, restocks));
+            }
+            applyRollbackBatch(rollbacks, unapplied);
+        } finally {
+            deduplicator.release(unapplied);
         }
     }
 
-    // Safe parsing for Integer
-    private Integer parseIntegerSafely(String value) {
+    // Anything but an unknown product or an already recorded key is thrown, so the container requeues the batch
+    private void applyRollbackBatch(List<Rollback> rollbacks, Set<String> unapplied) {
+        // Several rollbacks of the same product are merged into a single update
+        Map<Long, Integer> restocks = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (Rollback rollback : rollbacks) {
+            rollback.restocks().forEach((id, quantity) -> restocks.merge(id, quantity, Integer::sum));
+            if (rollback.key() != null) {
+                keys.add(rollback.key());
+            }
+        }
+
+        if (restocks.isEmpty()) {
+            unapplied.removeAll(keys);
+            return;
+        }
+
         try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            logger.error("Invalid number format for quantity: {}", value);
-            return null;
+            if (apply(keys, restocks)) {
+                unapplied.removeAll(keys);
+                logger.info("Stock successfully reverted for {} products from {} messages", restocks.size(), rollbacks.size());
+                return;
+            }
+            logger.warn("Batch rollback of {} products has unknown products, reverting the messages one by one", restocks.size());
+        } catch (DuplicateKeyException e) {
+            // Another instance got some of these messages too, the ones it already applied are skipped below
+            logger.info("Some of the {} messages were already processed, reverting them one by one", rollbacks.size());
+        }
+
+        for (Rollback rollback : rollbacks) {
+            applyAlone(rollback);
+            unapplied.remove(rollback.key());
         }
     }
+
+    private void applyAlone(Rollback rollback) {
+        List<String> keys = rollback.key() == null ? List.of() : List.of(rollback.key());
+        try {
+            if (apply(keys, rollback.restocks())) {
+                return;
+            }
+            // Products are never deleted, the ones missing now won't show up in the same transaction
+            Map<Long, Integer> known = new HashMap<>();
+            rollback.restocks().forEach((id, quantity) -> {
+                if (productRepository.existsById(id)) {
+                    known.put(id, quantity);
+                } else {
+                    logger.error("Error reverting stock for product ID: {} with quantity: {}, the product doesn't exist", id, quantity);
+                }
+            });
+            if (!apply(keys, known)) {
+                logger.error("Could not revert the stock of the message with key: {}", rollback.key());
+            }
+        } catch (DuplicateKeyException e) {
+            duplicateMessages.increment();
+            logger.debug("Dropping message with key: {}, already processed by another consumer", rollback.key());
+        }
+    }
+
+    // The keys are recorded first in the same transaction as the restock, a key another consumer already
+    // recorded fails the insert before any stock is touched. Returns false when a product doesn't exist.
+    private boolean apply(List<String> keys, Map<Long, Integer> restocks) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            deduplicator.recordProcessed(keys);
+            if (restocks.isEmpty()) {
+                return true;
+            }
+            try {
+                productService.restockProducts(restocks);
+                return true;
+            } catch (NoProductsFoundException e) {
+                status.setRollbackOnly();
+                return false;
+            }
+        }));
+    }
+
+    private void recordLag(List<Message> messages) {
+        long now = System.currentTimeMillis();
+        for (Message message : messages) {
+            Date timestamp = message.getMessageProperties().getTimestamp();
+            if (timestamp != null) {
+                lagTimer.record(Math.max(0, now - timestamp.getTime()), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Producers set it as the message id, or as a header when the id is already used
+    private static String idempotencyKey(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        Object header = properties.getHeader(IDEMPOTENCY_KEY_HEADER);
+        return header != null ? header.toString() : properties.getMessageId();
+    }
+
+    private void parseRollback(Message message, Map<Long, Integer> restocks) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Received message: {}", new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+
+        try {
+            StockRollback rollback = messageConverter.fromMessage(message);
+            for (StockReservation item : rollback.items()) {
+                if (item.productId() != null && item.quantity() != null) {
+                    restocks.merge(item.productId(), item.quantity(), Integer::sum);
+                } else {
+                    logger.error("Invalid data in the message. Product ID: {}, Quantity: {}", item.productId(), item.quantity());
+                }
+            }
+        } catch (MessageConversionException e) {
+            invalidMessages.increment();
+            logger.error("Invalid rollback message: {}", e.getMessage());
+        }
+    }
+
+    private record Rollback(String key, Map<Long, Integer> restocks) { }
 }
@@ -0,0 +1,7 @@
+package com.example.product_service.rabbitmq;
+
+import com.example.product_service.dtos.StockReservation;
+
+import java.util.List;
+
+public record StockRollback(List<StockReservation> items) { }
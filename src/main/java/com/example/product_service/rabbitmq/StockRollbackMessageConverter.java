@@ -0,0 +1,130 @@
+package com.example.product_service.rabbitmq;
+
+import com.example.product_service.dtos.StockReservation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads rollback messages in three formats:
+//  - binary (application/x-stock-rollback): int item count followed by (long productId, int quantity) per item
+//  - JSON: {"items":[{"productId":1,"quantity":2}]}
+//  - the legacy "productId,quantity" text
+public class StockRollbackMessageConverter implements MessageConverter {
+
+    public static final String BINARY_CONTENT_TYPE = "application/x-stock-rollback";
+
+    private static final int ITEM_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final ObjectMapper objectMapper;
+
+    public StockRollbackMessageConverter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    // Writes JSON unless the binary content type was requested
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        if (!(object instanceof StockRollback rollback)) {
+            throw new MessageConversionException("Only StockRollback messages are supported, received: " + object);
+        }
+
+        if (BINARY_CONTENT_TYPE.equals(messageProperties.getContentType())) {
+            return new Message(toBinary(rollback), messageProperties);
+        }
+
+        try {
+            messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+            return new Message(objectMapper.writeValueAsBytes(rollback), messageProperties);
+        } catch (IOException e) {
+            throw new MessageConversionException("Could not write the rollback message", e);
+        }
+    }
+
+    @Override
+    public StockRollback fromMessage(Message message) throws MessageConversionException {
+        byte[] body = message.getBody();
+        String contentType = message.getMessageProperties().getContentType();
+
+        if (BINARY_CONTENT_TYPE.equals(contentType)) {
+            return fromBinary(body);
+        }
+        if ((contentType != null && contentType.contains("json")) || startsWithBrace(body)) {
+            return fromJson(body);
+        }
+        return fromText(body);
+    }
+
+    private static byte[] toBinary(StockRollback rollback) {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + rollback.items().size() * ITEM_BYTES);
+        buffer.putInt(rollback.items().size());
+        for (StockReservation item : rollback.items()) {
+            buffer.putLong(item.productId());
+            buffer.putInt(item.quantity());
+        }
+        return buffer.array();
+    }
+
+    private static StockRollback fromBinary(byte[] body) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() != (long) count * ITEM_BYTES) {
+                throw new MessageConversionException("Invalid binary rollback message of " + body.length + " bytes");
+            }
+            List<StockReservation> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                items.add(new StockReservation(buffer.getLong(), buffer.getInt()));
+            }
+            return new StockRollback(items);
+        } catch (BufferUnderflowException e) {
+            throw new MessageConversionException("Invalid binary rollback message of " + body.length + " bytes");
+        }
+    }
+
+    private StockRollback fromJson(byte[] body) {
+        try {
+            StockRollback rollback = objectMapper.readValue(body, StockRollback.class);
+            if (rollback.items() == null) {
+                throw new MessageConversionException("The rollback message has no items");
+            }
+            return rollback;
+        } catch (IOException e) {
+            throw new MessageConversionException("Invalid JSON rollback message", e);
+        }
+    }
+
+    // Legacy format "productId,quantity"
+    private static StockRollback fromText(byte[] body) {
+        String message = new String(body, StandardCharsets.UTF_8);
+        int comma = message.indexOf(',');
+        if (comma < 0 || message.indexOf(',', comma + 1) >= 0) {
+            throw new MessageConversionException("Invalid message format. Expected format: 'productId,quantity', received: " + message);
+        }
+
+        try {
+            long productId = Long.parseLong(message.substring(0, comma).trim());
+            int quantity = Integer.parseInt(message.substring(comma + 1).trim());
+            return new StockRollback(List.of(new StockReservation(productId, quantity)));
+        } catch (NumberFormatException e) {
+            throw new MessageConversionException("Invalid number format in message: " + message);
+        }
+    }
+
+    private static boolean startsWithBrace(byte[] body) {
+        for (byte b : body) {
+            if (!Character.isWhitespace(b)) {
+                return b == '{';
+            }
+        }
+        return false;
+    }
+}
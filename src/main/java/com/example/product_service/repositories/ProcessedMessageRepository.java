@@ -0,0 +1,20 @@
+package com.example.product_service.repositories;
+
+import com.example.product_service.models.ProcessedMessageEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface ProcessedMessageRepository extends JpaRepository<ProcessedMessageEntity, String> {
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProcessedMessageEntity m WHERE m.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") Instant before);
+}
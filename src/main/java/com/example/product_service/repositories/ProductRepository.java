@@ -1,13 +1,59 @@
 package com.example.product_service.repositories;
 
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductStockView;
 import com.example.product_service.models.ProductEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+// Query methods run in read-only transactions, so Hibernate skips flushing and dirty checking for them.
+// The modifying ones declare their own transaction.
+// Stock read through the projections is the stock available to sell, without what open holds reserved.
 @Repository
-public interface ProductRepository extends JpaRepository<ProductEntity, Long> {
+@Transactional(readOnly = true)
+public interface ProductRepository extends JpaRepository<ProductEntity, Long>, ProductRepositoryCustom {
 
     List<ProductEntity> findByIdIn(List<Long> productIds);
+
+    List<ProductEntity> findByNameIn(Collection<String> names);
+
+    @Query("SELECT new com.example.product_service.dtos.ProductDTO(p.id, p.name, p.productdescription, p.productprice, p.stock - p.reserved, p.version) " +
+            "FROM ProductEntity p ORDER BY p.id")
+    List<ProductDTO> findAllProductDTOs();
+
+    @Query("SELECT new com.example.product_service.dtos.ProductDTO(p.id, p.name, p.productdescription, p.productprice, p.stock - p.reserved, p.version) " +
+            "FROM ProductEntity p WHERE p.id = :id")
+    Optional<ProductDTO> findProductDTOById(@Param("id") Long id);
+
+    @Query("SELECT new com.example.product_service.dtos.ProductDTO(p.id, p.name, p.productdescription, p.productprice, p.stock - p.reserved, p.version) " +
+            "FROM ProductEntity p WHERE p.id IN :ids")
+    List<ProductDTO> findProductDTOsByIdIn(@Param("ids") List<Long> ids);
+
+    @Query("SELECT p.stock - p.reserved FROM ProductEntity p WHERE p.id = :id")
+    Optional<Integer> findStockById(@Param("id") Long id);
+
+    @Query("SELECT p.id AS id, p.stock - p.reserved AS stock, p.version AS version FROM ProductEntity p WHERE p.id = :id")
+    Optional<ProductStockView> findStockViewById(@Param("id") Long id);
+
+    @Query("SELECT p.id AS id, p.stock - p.reserved AS stock, p.version AS version FROM ProductEntity p WHERE p.id IN :ids")
+    List<ProductStockView> findStocksByIdIn(@Param("ids") List<Long> ids);
+
+    // Conditional decrement, returns 0 when the product doesn't exist or hasn't enough stock left outside the holds
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProductEntity p SET p.stock = p.stock - :quantity, p.version = p.version + 1 WHERE p.id = :id AND p.stock - p.reserved >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProductEntity p SET p.stock = p.stock + :quantity, p.version = p.version + 1 WHERE p.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
 }
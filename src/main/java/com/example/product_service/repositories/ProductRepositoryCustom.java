@@ -0,0 +1,12 @@
+package com.example.product_service.repositories;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductFilter;
+
+import java.util.List;
+
+public interface ProductRepositoryCustom {
+
+    // Keyset page of the products matching the filter, ordered by id
+    List<ProductDTO> findProducts(ProductFilter filter, Long after, int limit);
+}
@@ -0,0 +1,67 @@
+package com.example.product_service.repositories;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductFilter;
+import com.example.product_service.models.ProductEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Only the filters that are sent end up in the where clause, so the database can pick the matching index
+// instead of planning around "(:param IS NULL OR ...)" conditions
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Its own short read-only transaction, the export reads chunk after chunk while writing them out
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductDTO> findProducts(ProductFilter filter, Long after, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductDTO> query = builder.createQuery(ProductDTO.class);
+        Root<ProductEntity> product = query.from(ProductEntity.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (after != null) {
+            predicates.add(builder.greaterThan(product.get("id"), after));
+        }
+        if (filter.available() != null) {
+            predicates.add(builder.equal(product.get("available"), filter.available()));
+        }
+        if (filter.minPrice() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(product.get("productprice"), filter.minPrice()));
+        }
+        if (filter.maxPrice() != null) {
+            predicates.add(builder.lessThanOrEqualTo(product.get("productprice"), filter.maxPrice()));
+        }
+        if (filter.description() != null && !filter.description().isBlank()) {
+            String pattern = "%" + escapeLike(filter.description().trim().toLowerCase(Locale.ROOT)) + "%";
+            predicates.add(builder.like(builder.lower(product.get("productdescription")), pattern, '\\'));
+        }
+
+        // Selects only the columns of ProductDTO, nothing gets managed by the persistence context
+        query.select(builder.construct(ProductDTO.class,
+                        product.get("id"), product.get("name"), product.get("productdescription"),
+                        product.get("productprice"), builder.diff(product.<Integer>get("stock"), product.<Integer>get("reserved")),
+                        product.get("version")))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(builder.asc(product.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
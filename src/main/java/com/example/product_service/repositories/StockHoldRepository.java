@@ -0,0 +1,17 @@
+package com.example.product_service.repositories;
+
+import com.example.product_service.models.StockHoldEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface StockHoldRepository extends JpaRepository<StockHoldEntity, Long> {
+
+    List<StockHoldEntity> findByHoldIdOrderById(String holdId);
+
+    List<StockHoldEntity> findByExpiresAtLessThanEqualOrderByExpiresAtAscIdAsc(Instant now, Limit limit);
+}
@@ -0,0 +1,141 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Catalog data (name, description, price) and stock are cached separately,
+// stock changes far more often so it gets a much shorter ttl.
+@Component
+public class ProductCache implements MeterBinder {
+
+    private final boolean enabled;
+    private final Cache<Long, ProductDTO> catalog;
+    private final Cache<Long, Stock> stock;
+    // Ids looked up and not found, so unknown ids sent over and over don't reach the database every time
+    private final Cache<Long, Boolean> missing;
+    // Bumped before every eviction. Values loaded before an eviction aren't cached after it, otherwise a read
+    // racing an update would put back what the update's evict just dropped.
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong stockEvictions = new AtomicLong();
+
+    public ProductCache(@Value("${product.cache.enabled:true}") boolean enabled,
+                        @Value("${product.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${product.cache.catalog-ttl:10m}") Duration catalogTtl,
+                        @Value("${product.cache.stock-ttl:2s}") Duration stockTtl,
+                        @Value("${product.cache.missing-ttl:5s}") Duration missingTtl) {
+        this.enabled = enabled;
+        this.catalog = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(catalogTtl)
+                .recordStats()
+                .build();
+        this.stock = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(stockTtl)
+                .recordStats()
+                .build();
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(missingTtl)
+                .recordStats()
+                .build();
+    }
+
+    // The stock of the returned product may be outdated, use getStock for it
+    public ProductDTO getCatalog(Long id) {
+        return enabled ? catalog.getIfPresent(id) : null;
+    }
+
+    public Stock getStock(Long id) {
+        return enabled ? stock.getIfPresent(id) : null;
+    }
+
+    // Taken before loading from the database and handed to the put methods
+    public Token token() {
+        return new Token(evictions.get(), stockEvictions.get());
+    }
+
+    // Moves with every eviction. A token's stock count is read last and evict bumps it first,
+    // so a generation at least token().stock() was read after every evict the token counts.
+    public long generation() {
+        return stockEvictions.get();
+    }
+
+    public void put(ProductDTO product, Token token) {
+        if (enabled && evictions.get() == token.catalog()) {
+            catalog.put(product.getId(), product);
+            // An evict between the check and the put has to win
+            if (evictions.get() != token.catalog()) {
+                catalog.invalidate(product.getId());
+            }
+        }
+        putStock(product.getId(), product.getStock(), product.getVersion(), token);
+    }
+
+    public void putStock(Long id, Integer value, Long version, Token token) {
+        if (enabled && stockEvictions.get() == token.stock()) {
+            stock.put(id, new Stock(value, version));
+            if (stockEvictions.get() != token.stock()) {
+                stock.invalidate(id);
+            }
+        }
+    }
+
+    public boolean isMissing(Long id) {
+        return enabled && missing.getIfPresent(id) != null;
+    }
+
+    public void putMissing(Long id, Token token) {
+        if (enabled && evictions.get() == token.catalog()) {
+            missing.put(id, Boolean.TRUE);
+            if (evictions.get() != token.catalog()) {
+                missing.invalidate(id);
+            }
+        }
+    }
+
+    // Created products are evicted after their commit too, which drops them from the missing ids
+    public void evict(Long id) {
+        stockEvictions.incrementAndGet();
+        evictions.incrementAndGet();
+        missing.invalidate(id);
+        catalog.invalidate(id);
+        stock.invalidate(id);
+    }
+
+    public void evictStock(Long id) {
+        stockEvictions.incrementAndGet();
+        stock.invalidate(id);
+    }
+
+    public CacheStats catalogStats() {
+        return catalog.stats();
+    }
+
+    public CacheStats stockStats() {
+        return stock.stats();
+    }
+
+    // Stock changes bump the version, so it's cached with the stock rather than with the catalog data
+    public record Stock(Integer stock, Long version) { }
+
+    // Stock evictions are counted apart, they are frequent and would keep catalog entries from being cached
+    public record Token(long catalog, long stock) { }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, catalog, "product.catalog");
+        CaffeineCacheMetrics.monitor(registry, stock, "product.stock");
+        CaffeineCacheMetrics.monitor(registry, missing, "product.missing");
+    }
+}
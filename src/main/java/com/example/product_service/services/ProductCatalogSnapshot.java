@@ -0,0 +1,355 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductStockView;
+import com.example.product_service.repositories.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Optional memory resident copy of the whole catalog (product.catalog.in-memory.enabled), the database stays
+// the system of record. Products are kept in immutable segments of up to 1024 consecutive ids, readers take
+// the current snapshot without locking and writers replace only the segments they touch (copy on write).
+// Writes are published after their transaction commits. Versions keep a late publish from undoing a newer one,
+// a stock change that doesn't follow the version in memory reloads the product from the database.
+// Other instances' writes are only picked up by the periodic reload, the mode fits a single writer instance.
+@Component
+public class ProductCatalogSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalogSnapshot.class);
+
+    private static final int SEGMENT_BITS = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${product.catalog.in-memory.enabled:false}")
+    private boolean enabled;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+    // Ids written while the snapshot is being loaded, they are read again once it's in place
+    private Set<Long> writtenWhileLoading;
+    // Publishes run after the writer's transaction commits, while its resources are still bound to the thread,
+    // so the reload reads in a transaction of its own instead of joining the finished one
+    private TransactionTemplate reloadTransaction;
+
+    @PostConstruct
+    void init() {
+        reloadTransaction = new TransactionTemplate(transactionManager);
+        reloadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        reloadTransaction.setReadOnly(true);
+        if (enabled) {
+            Gauge.builder("product.catalog.snapshot.size", this, catalog -> catalog.size())
+                    .description("Products held by the memory resident catalog")
+                    .register(meterRegistry);
+        }
+    }
+
+    // Reads fall back to the database until the first load finishes
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public ProductDTO get(long id) {
+        Snapshot current = snapshot;
+        return current == null ? null : current.get(id);
+    }
+
+    // Every product, in id order
+    public List<ProductDTO> all() {
+        Snapshot current = snapshot;
+        return current == null ? List.of() : current.all();
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.size;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            writtenWhileLoading = new HashSet<>();
+        } finally {
+            writeLock.unlock();
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        SegmentBuilder builder = new SegmentBuilder();
+        try {
+            jdbcTemplate.query("SELECT id, name, productdescription, productprice, stock - reserved AS stock, version FROM product_entity ORDER BY id",
+                    rs -> {
+                        long id = rs.getLong("id");
+                        if (builder.size > 0 && segmentKey(id) != builder.key) {
+                            segments.add(builder.build());
+                        }
+                        builder.add(new ProductDTO(id, rs.getString("name"), rs.getString("productdescription"),
+                                rs.getDouble("productprice"), rs.getInt("stock"), rs.getLong("version")));
+                    });
+            if (builder.size > 0) {
+                segments.add(builder.build());
+            }
+        } catch (RuntimeException e) {
+            writeLock.lock();
+            try {
+                writtenWhileLoading = null;
+            } finally {
+                writeLock.unlock();
+            }
+            throw e;
+        }
+
+        List<Long> written;
+        writeLock.lock();
+        try {
+            written = new ArrayList<>(writtenWhileLoading);
+            writtenWhileLoading = null;
+            snapshot = Snapshot.of(segments.toArray(Segment[]::new));
+        } finally {
+            writeLock.unlock();
+        }
+        reload(written);
+        logger.info("Catalog snapshot loaded with {} products", size());
+    }
+
+    @Scheduled(fixedDelayString = "${product.catalog.in-memory.refresh-interval-ms:600000}",
+            initialDelayString = "${product.catalog.in-memory.refresh-interval-ms:600000}")
+    public void refresh() {
+        if (enabled && isReady()) {
+            load();
+        }
+    }
+
+    // Whole products, from creates, updates and imports
+    public void publish(Collection<ProductDTO> products) {
+        if (!enabled || products.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            trackWhileLoading(products.stream().map(ProductDTO::getId).toList());
+            Snapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            List<ProductDTO> newer = new ArrayList<>(products.size());
+            for (ProductDTO product : products) {
+                ProductDTO existing = current.get(product.getId());
+                if (existing == null || product.getVersion() > existing.getVersion()) {
+                    newer.add(product);
+                }
+            }
+            snapshot = current.with(newer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Stock changes, the stock and version read back in the transaction that made them
+    public void publishStocks(Collection<ProductStockView> stocks) {
+        if (!enabled || stocks.isEmpty()) {
+            return;
+        }
+        List<Long> stale = new ArrayList<>();
+        writeLock.lock();
+        try {
+            trackWhileLoading(stocks.stream().map(ProductStockView::getId).toList());
+            Snapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            List<ProductDTO> changed = new ArrayList<>(stocks.size());
+            for (ProductStockView stock : stocks) {
+                ProductDTO existing = current.get(stock.getId());
+                if (existing != null && stock.getVersion() == existing.getVersion() + 1) {
+                    changed.add(new ProductDTO(existing.getId(), existing.getName(), existing.getProductdescription(),
+                            existing.getProductprice(), stock.getStock(), stock.getVersion()));
+                } else if (existing == null || stock.getVersion() > existing.getVersion()) {
+                    // A change in between hasn't been published yet, it may not be a stock change
+                    stale.add(stock.getId());
+                }
+            }
+            snapshot = current.with(changed);
+        } finally {
+            writeLock.unlock();
+        }
+        reload(stale);
+    }
+
+    private void trackWhileLoading(List<Long> ids) {
+        if (writtenWhileLoading != null) {
+            ids.forEach(writtenWhileLoading::add);
+        }
+    }
+
+    private void reload(List<Long> ids) {
+        if (!ids.isEmpty()) {
+            publish(reloadTransaction.execute(status -> productRepository.findProductDTOsByIdIn(ids)));
+        }
+    }
+
+    private static long segmentKey(long id) {
+        return id >>> SEGMENT_BITS;
+    }
+
+    // Products of one key range sorted by id
+    private record Segment(long key, long[] ids, ProductDTO[] products) {
+
+        ProductDTO get(long id) {
+            int position = Arrays.binarySearch(ids, id);
+            return position >= 0 ? products[position] : null;
+        }
+
+        // Copy with the products replaced or inserted, they all belong to this segment and are sorted by id
+        Segment with(List<ProductDTO> changed) {
+            long[] newIds = new long[ids.length + changed.size()];
+            ProductDTO[] newProducts = new ProductDTO[newIds.length];
+            int size = 0;
+            int i = 0;
+            for (ProductDTO product : changed) {
+                while (i < ids.length && ids[i] < product.getId()) {
+                    newIds[size] = ids[i];
+                    newProducts[size++] = products[i++];
+                }
+                if (i < ids.length && ids[i] == product.getId()) {
+                    i++;
+                }
+                newIds[size] = product.getId();
+                newProducts[size++] = product;
+            }
+            int rest = ids.length - i;
+            System.arraycopy(ids, i, newIds, size, rest);
+            System.arraycopy(products, i, newProducts, size, rest);
+            size += rest;
+            return new Segment(key, Arrays.copyOf(newIds, size), Arrays.copyOf(newProducts, size));
+        }
+    }
+
+    private record Snapshot(long[] keys, Segment[] segments, int size) {
+
+        static Snapshot of(Segment[] segments) {
+            long[] keys = new long[segments.length];
+            int size = 0;
+            for (int i = 0; i < segments.length; i++) {
+                keys[i] = segments[i].key();
+                size += segments[i].ids().length;
+            }
+            return new Snapshot(keys, segments, size);
+        }
+
+        ProductDTO get(long id) {
+            int position = Arrays.binarySearch(keys, segmentKey(id));
+            return position >= 0 ? segments[position].get(id) : null;
+        }
+
+        List<ProductDTO> all() {
+            List<ProductDTO> products = new ArrayList<>(size);
+            for (Segment segment : segments) {
+                products.addAll(Arrays.asList(segment.products()));
+            }
+            return products;
+        }
+
+        // Only the segments holding changed products are copied, the rest are shared with this snapshot
+        Snapshot with(List<ProductDTO> changed) {
+            if (changed.isEmpty()) {
+                return this;
+            }
+            List<ProductDTO> sorted = new ArrayList<>(changed);
+            sorted.sort(Comparator.comparingLong(ProductDTO::getId));
+
+            List<Segment> result = new ArrayList<>(segments.length + 1);
+            int s = 0;
+            int from = 0;
+            while (from < sorted.size()) {
+                long key = segmentKey(sorted.get(from).getId());
+                int to = from;
+                while (to < sorted.size() && segmentKey(sorted.get(to).getId()) == key) {
+                    to++;
+                }
+                while (s < segments.length && segments[s].key() < key) {
+                    result.add(segments[s++]);
+                }
+                Segment segment = s < segments.length && segments[s].key() == key
+                        ? segments[s++]
+                        : new Segment(key, new long[0], new ProductDTO[0]);
+                result.add(segment.with(dedupe(sorted.subList(from, to))));
+                from = to;
+            }
+            while (s < segments.length) {
+                result.add(segments[s++]);
+            }
+            return of(result.toArray(Segment[]::new));
+        }
+
+        // A product changed twice in the same publish keeps its highest version
+        private static List<ProductDTO> dedupe(List<ProductDTO> products) {
+            List<ProductDTO> unique = new ArrayList<>(products.size());
+            for (ProductDTO product : products) {
+                int last = unique.size() - 1;
+                if (last >= 0 && unique.get(last).getId().equals(product.getId())) {
+                    if (product.getVersion() > unique.get(last).getVersion()) {
+                        unique.set(last, product);
+                    }
+                } else {
+                    unique.add(product);
+                }
+            }
+            return unique;
+        }
+    }
+
+    private static final class SegmentBuilder {
+        private long key;
+        private long[] ids = new long[1 << SEGMENT_BITS];
+        private ProductDTO[] products = new ProductDTO[1 << SEGMENT_BITS];
+        private int size;
+
+        void add(ProductDTO product) {
+            key = segmentKey(product.getId());
+            ids[size] = product.getId();
+            products[size++] = product;
+        }
+
+        Segment build() {
+            Segment segment = new Segment(key, Arrays.copyOf(ids, size), Arrays.copyOf(products, size));
+            size = 0;
+            return segment;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ImportError;
+import com.example.product_service.dtos.ImportReport;
+import com.example.product_service.dtos.NewProduct;
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.rabbitmq.ProductChangeEvent;
+import com.example.product_service.rabbitmq.ProductEventOutbox;
+import com.example.product_service.repositories.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Creates or updates products (matched by name) from a CSV or NDJSON stream. Rows are read one at a time and
+// written in chunks, each chunk in its own transaction, so memory doesn't grow with the file.
+// Invalid rows are reported and skipped, the valid ones are still imported.
+@Service
+public class ProductImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final List<String> CSV_COLUMNS = List.of("name", "productdescription", "productprice", "stock");
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private ProductCatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private ProductEventOutbox eventOutbox;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${product.import.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${product.import.max-reported-errors:100}")
+    private int maxReportedErrors;
+
+    public ImportReport importProducts(InputStream input, Format format) throws IOException {
+        Progress progress = new Progress();
+        List<NewProduct> chunk = new ArrayList<>(chunkSize);
+        ObjectReader jsonReader = objectMapper.readerFor(NewProduct.class);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            int[] columns = null;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == Format.CSV && columns == null) {
+                    columns = csvColumns(line);
+                    continue;
+                }
+
+                progress.rows++;
+                try {
+                    NewProduct product = format == Format.CSV ? parseCsv(line, columns) : parseJson(line, jsonReader);
+                    ProductServiceImpl.validateNewProduct(product);
+                    chunk.add(product);
+                } catch (Exception e) {
+                    progress.reject(lineNumber, e.getMessage(), maxReportedErrors);
+                    continue;
+                }
+
+                if (chunk.size() == chunkSize) {
+                    write(chunk, progress);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            write(chunk, progress);
+        }
+
+        return new ImportReport(progress.rows, progress.created, progress.updated, progress.rejected,
+                progress.errors, progress.rejected > progress.errors.size());
+    }
+
+    private void write(List<NewProduct> chunk, Progress progress) {
+        // A name repeated in the chunk keeps its last row
+        Map<String, NewProduct> byName = new LinkedHashMap<>();
+        for (NewProduct product : chunk) {
+            byName.put(product.name(), product);
+        }
+
+        List<ProductEntity> written = transactionTemplate.execute(status -> {
+            Map<String, ProductEntity> existing = new HashMap<>();
+            for (ProductEntity product : productRepository.findByNameIn(byName.keySet())) {
+                existing.putIfAbsent(product.getName(), product);
+            }
+
+            List<ProductEntity> created = new ArrayList<>();
+            List<ProductEntity> products = new ArrayList<>(byName.size());
+            for (NewProduct row : byName.values()) {
+                ProductEntity product = existing.get(row.name());
+                if (product == null) {
+                    product = new ProductEntity(row.name(), row.productdescription(), row.productprice(), row.stock());
+                    created.add(product);
+                } else {
+                    product.setProductdescription(row.productdescription());
+                    product.setProductprice(row.productprice());
+                    product.setAvailableStock(row.stock());
+                }
+                products.add(product);
+            }
+            productRepository.saveAll(created);
+            // Inserts and updates go out as JDBC batches, the persistence context ends with the transaction
+            entityManager.flush();
+            eventOutbox.recordAll(products.stream()
+                    .map(product -> existing.containsKey(product.getName()) ? ProductChangeEvent.updated(product) : ProductChangeEvent.created(product))
+                    .toList());
+
+            progress.created += created.size();
+            progress.updated += products.size() - created.size();
+            return products;
+        });
+
+        for (ProductEntity product : written) {
+            stockLedger.evict(product.getId());
+            productCache.evict(product.getId());
+            searchIndex.index(product);
+        }
+        catalogSnapshot.publish(written.stream().map(ProductDTO::new).toList());
+    }
+
+    private static int[] csvColumns(String header) {
+        List<String> names = splitCsv(header).stream()
+                .map(name -> name.trim().toLowerCase(Locale.ROOT))
+                .toList();
+        int[] columns = new int[CSV_COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = names.indexOf(CSV_COLUMNS.get(i));
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("The CSV header must have the columns " + CSV_COLUMNS + ".");
+            }
+        }
+        return columns;
+    }
+
+    private static NewProduct parseCsv(String line, int[] columns) {
+        List<String> fields = splitCsv(line);
+        return new NewProduct(
+                field(fields, columns[0]),
+                field(fields, columns[1]),
+                parseDouble(field(fields, columns[2]), "productprice"),
+                parseInteger(field(fields, columns[3]), "stock"));
+    }
+
+    private static NewProduct parseJson(String line, ObjectReader reader) {
+        try {
+            NewProduct product = reader.readValue(line);
+            // The validations expect blank strings rather than missing ones
+            return new NewProduct(product.name() == null ? "" : product.name().trim(),
+                    product.productdescription() == null ? "" : product.productdescription().trim(),
+                    product.productprice(), product.stock());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static String field(List<String> fields, int column) {
+        return column < fields.size() ? fields.get(column).trim() : "";
+    }
+
+    // Empty fields are null, so they're reported as missing
+    private static Double parseDouble(String value, String column) {
+        try {
+            return value.isEmpty() ? null : Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in column " + column + ": " + value);
+        }
+    }
+
+    private static Integer parseInteger(String value, String column) {
+        try {
+            return value.isEmpty() ? null : Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in column " + column + ": " + value);
+        }
+    }
+
+    // Comma separated fields, double quotes around fields with commas and "" for a quote inside them
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static final class Progress {
+        private long rows;
+        private long created;
+        private long updated;
+        private long rejected;
+        private final List<ImportError> errors = new ArrayList<>();
+
+        void reject(long line, String message, int maxErrors) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                errors.add(new ImportError(line, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductLookupResult;
+import com.example.product_service.dtos.ProductPage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+// The JSON of every product is kept once encoded and reused while the product doesn't change. Any write
+// bumps the version, the fields are compared too so a product built from data of different versions never
+// takes the place of the encoding of its version. Lists and pages are written by joining the encoded
+// products, Jackson only runs for the products that changed.
+@Component
+public class ProductJsonCache implements MeterBinder {
+
+    private static final byte[] PRODUCTS_FIELD = "{\"products\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEXT_CURSOR_FIELD = ",\"nextCursor\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MISSING_IDS_FIELD = ",\"missingIds\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OBJECT_END = {'}'};
+
+    private final boolean enabled;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter productWriter;
+    private final ObjectWriter listWriter;
+    private final long maximumSize;
+    private final Cache<Long, Encoded> encoded;
+
+    public ProductJsonCache(ObjectMapper objectMapper,
+                            @Value("${product.json-cache.enabled:true}") boolean enabled,
+                            @Value("${product.json-cache.maximum-size:10000}") long maximumSize) {
+        this.enabled = enabled;
+        this.objectMapper = objectMapper;
+        this.productWriter = objectMapper.writerFor(ProductDTO.class);
+        this.listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, ProductDTO.class));
+        this.maximumSize = maximumSize;
+        this.encoded = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public byte[] product(ProductDTO product) {
+        if (!enabled || product.getVersion() == null) {
+            return write(productWriter, product);
+        }
+        Encoded cached = encoded.getIfPresent(product.getId());
+        if (cached != null && sameContent(cached.product(), product)) {
+            return cached.json();
+        }
+        byte[] json = write(productWriter, product);
+        encoded.put(product.getId(), new Encoded(product, json));
+        return json;
+    }
+
+    public byte[] products(List<ProductDTO> products) {
+        // A list the cache can't hold would only push out the encodings of the products read the most
+        if (!enabled || products.size() > maximumSize) {
+            return write(listWriter, products);
+        }
+        byte[][] parts = new byte[products.size()][];
+        int length = 2 + Math.max(0, products.size() - 1);
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = product(products.get(i));
+            length += parts[i].length;
+        }
+
+        byte[] json = new byte[length];
+        int position = 0;
+        json[position++] = '[';
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                json[position++] = ',';
+            }
+            System.arraycopy(parts[i], 0, json, position, parts[i].length);
+            position += parts[i].length;
+        }
+        json[position] = ']';
+        return json;
+    }
+
+    public byte[] page(ProductPage page) {
+        return concat(PRODUCTS_FIELD, products(page.products()), NEXT_CURSOR_FIELD, write(objectMapper.writer(), page.nextCursor()), OBJECT_END);
+    }
+
+    public byte[] lookup(ProductLookupResult result) {
+        return concat(PRODUCTS_FIELD, products(result.products()), MISSING_IDS_FIELD, write(objectMapper.writer(), result.missingIds()), OBJECT_END);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] json = new byte[length];
+        int position = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, json, position, part.length);
+            position += part.length;
+        }
+        return json;
+    }
+
+    private static byte[] write(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + value, e);
+        }
+    }
+
+    private static boolean sameContent(ProductDTO cached, ProductDTO product) {
+        return cached == product || (Objects.equals(cached.getVersion(), product.getVersion())
+                && Objects.equals(cached.getStock(), product.getStock())
+                && Objects.equals(cached.getProductprice(), product.getProductprice())
+                && Objects.equals(cached.getName(), product.getName())
+                && Objects.equals(cached.getProductdescription(), product.getProductdescription()));
+    }
+
+    private record Encoded(ProductDTO product, byte[] json) { }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, encoded, "product.json");
+    }
+}
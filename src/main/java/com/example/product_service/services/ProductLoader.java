@@ -0,0 +1,77 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductStockView;
+import com.example.product_service.repositories.ProductRepository;
+import com.example.product_service.utils.BatchLoader;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Single product lookups that missed the cache. Concurrent lookups of the same product share one query and
+// lookups of different products arriving together go out as one IN query, see BatchLoader. A lookup only waits
+// for a query that started after the cache token its caller took, so what it returns can be cached under that token.
+// With product.lookup.batching.enabled=false every lookup runs its own query.
+@Component
+public class ProductLoader {
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private final BatchLoader<ProductDTO> products;
+    private final BatchLoader<ProductStockView> stocks;
+
+    public ProductLoader(ProductRepository productRepository,
+                         ProductCache productCache,
+                         MeterRegistry meterRegistry,
+                         @Value("${product.lookup.batching.enabled:true}") boolean enabled,
+                         @Value("${product.lookup.batching.window:1ms}") Duration window,
+                         @Value("${product.lookup.batching.max-batch-size:100}") int maxBatchSize) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+        this.products = new BatchLoader<>(this::loadProducts, productCache::generation, window.toNanos(), maxBatchSize, batchSize(meterRegistry, "product"));
+        this.stocks = new BatchLoader<>(this::loadStocks, productCache::generation, window.toNanos(), maxBatchSize, batchSize(meterRegistry, "stock"));
+        Gauge.builder("product.lookup.in_flight", () -> products.inFlight() + stocks.inFlight())
+                .description("Ids being loaded, callers asking for one of them wait for the same query")
+                .register(meterRegistry);
+    }
+
+    public ProductDTO findProductDTOById(Long id) {
+        return enabled ? products.load(id) : productRepository.findProductDTOById(id).orElse(null);
+    }
+
+    public ProductStockView findStockViewById(Long id) {
+        return enabled ? stocks.load(id) : productRepository.findStockViewById(id).orElse(null);
+    }
+
+    private Map<Long, ProductDTO> loadProducts(List<Long> ids) {
+        Map<Long, ProductDTO> found = new HashMap<>();
+        for (ProductDTO product : productRepository.findProductDTOsByIdIn(ids)) {
+            found.put(product.getId(), product);
+        }
+        return found;
+    }
+
+    private Map<Long, ProductStockView> loadStocks(List<Long> ids) {
+        Map<Long, ProductStockView> found = new HashMap<>();
+        for (ProductStockView stock : productRepository.findStocksByIdIn(ids)) {
+            found.put(stock.getId(), stock);
+        }
+        return found;
+    }
+
+    private static Consumer<Integer> batchSize(MeterRegistry meterRegistry, String lookup) {
+        DistributionSummary summary = DistributionSummary.builder("product.lookup.batch.size")
+                .description("Ids loaded per query by the lookup batching")
+                .tag("lookup", lookup)
+                .register(meterRegistry);
+        return summary::record;
+    }
+}
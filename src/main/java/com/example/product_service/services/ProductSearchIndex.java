@@ -0,0 +1,365 @@
+package com.example.product_service.services;
+
+import com.example.product_service.models.ProductEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// Inverted index over product names and descriptions. Every query token has to match the start of a
+// word, names weigh more than descriptions and exact words more than prefixes.
+// Updated products are appended as new documents and the old ones marked deleted, the index is compacted
+// once deleted documents pile up.
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final int MIN_DELETED_TO_COMPACT = 1_000;
+    // Shorter tokens only match whole words, a single letter prefix would match most of the catalog
+    private static final int MIN_PREFIX_LENGTH = 2;
+    // Tokens expanding to more words get their scores materialized instead of binary searched per document
+    private static final int MAX_LOOKED_UP_WORDS = 4;
+
+    // Worst hit first so the heap can drop it when it grows over the limit
+    private static final Comparator<Hit> WORST_FIRST = Comparator.comparingInt(Hit::score)
+            .thenComparing(Comparator.comparingLong(Hit::productId).reversed());
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    private List<Doc> pendingWhileRebuilding;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingWhileRebuilding = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index rebuilt = new Index();
+        try {
+            jdbcTemplate.query("SELECT id, name, productdescription, productprice, available FROM product_entity",
+                    rs -> {
+                        rebuilt.add(toDoc(rs.getLong("id"), rs.getString("name"), rs.getString("productdescription"),
+                                rs.getDouble("productprice"), rs.getBoolean("available")));
+                    });
+        } finally {
+            lock.writeLock().lock();
+            try {
+                // Products written during the rebuild may be missing from what was read
+                pendingWhileRebuilding.forEach(rebuilt::add);
+                pendingWhileRebuilding = null;
+                index = rebuilt;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        logger.info("Search index built with {} products", rebuilt.docByProduct.size());
+    }
+
+    public void index(ProductEntity product) {
+        index(product.getId(), product.getName(), product.getProductdescription(), product.getProductprice(), product.isAvailable());
+    }
+
+    public void index(Long id, String name, String description, Double price, boolean available) {
+        Doc doc = toDoc(id, name, description, price == null ? 0 : price, available);
+        lock.writeLock().lock();
+        try {
+            index.add(doc);
+            if (pendingWhileRebuilding != null) {
+                pendingWhileRebuilding.add(doc);
+            }
+            if (index.deleted.cardinality() > MIN_DELETED_TO_COMPACT && index.deleted.cardinality() * 4 > index.size) {
+                index = index.compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Returns the ids of the best matches, best first. An empty query only applies the filters.
+    public List<Long> search(String query, Double minPrice, Double maxPrice, Boolean available, int limit) {
+        Set<String> tokens = tokenize(query);
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, WORST_FIRST);
+
+        lock.readLock().lock();
+        try {
+            Index current = index;
+            TokenMatch[] matches = new TokenMatch[tokens.size()];
+            int i = 0;
+            for (String token : tokens) {
+                matches[i] = current.match(token);
+                if (matches[i++].size == 0) {
+                    return List.of();
+                }
+            }
+            // The rarest token drives the loop, the others are only looked up for its documents
+            Arrays.sort(matches, Comparator.comparingLong(TokenMatch::size));
+            for (i = 1; i < matches.length; i++) {
+                if (matches[i].postings.length > MAX_LOOKED_UP_WORDS) {
+                    matches[i].materialize(current.size);
+                }
+            }
+
+            Query search = new Query(current, matches, minPrice, maxPrice, available, top, limit);
+            if (matches.length == 0) {
+                for (int docId = 0; docId < current.size; docId++) {
+                    search.collect(docId, 1);
+                }
+            } else if (matches[0].postings.length == 1) {
+                Postings postings = matches[0].postings[0];
+                boolean exact = matches[0].exact[0];
+                for (int p = 0; p < postings.size; p++) {
+                    int entry = postings.entries[p];
+                    search.collect(entry >>> 1, weight(exact, (entry & 1) == 1));
+                }
+            } else {
+                // A document can be under several of the expanded words
+                matches[0].materialize(current.size);
+                byte[] scores = matches[0].scores;
+                for (int docId = 0; docId < current.size; docId++) {
+                    if (scores[docId] > 0) {
+                        search.collect(docId, scores[docId]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Long[] ids = new Long[top.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = top.poll().productId();
+        }
+        return Arrays.asList(ids);
+    }
+
+    private static int weight(boolean exact, boolean inName) {
+        return inName ? (exact ? 4 : 3) : (exact ? 2 : 1);
+    }
+
+    private static Doc toDoc(long id, String name, String description, double price, boolean available) {
+        return new Doc(id, tokenize(name), tokenize(description), price, available);
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String token : NON_WORD.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private record Hit(long productId, int score) { }
+
+    private record Doc(long productId, Set<String> nameTokens, Set<String> descriptionTokens, double price, boolean available) { }
+
+    private record Query(Index index, TokenMatch[] matches, Double minPrice, Double maxPrice, Boolean available,
+                         PriorityQueue<Hit> top, int limit) {
+
+        void collect(int docId, int score) {
+            if (index.deleted.get(docId)
+                    || (minPrice != null && index.prices[docId] < minPrice)
+                    || (maxPrice != null && index.prices[docId] > maxPrice)
+                    || (available != null && index.available.get(docId) != available)) {
+                return;
+            }
+            for (int i = 1; i < matches.length; i++) {
+                int tokenScore = matches[i].score(docId);
+                if (tokenScore == 0) {
+                    return;
+                }
+                score += tokenScore;
+            }
+
+            long productId = index.productIds[docId];
+            if (top.size() == limit) {
+                Hit worst = top.peek();
+                if (score < worst.score() || (score == worst.score() && productId > worst.productId())) {
+                    return;
+                }
+                top.poll();
+            }
+            top.offer(new Hit(productId, score));
+        }
+    }
+
+    // The words a query token expands to
+    private static final class TokenMatch {
+        private final Postings[] postings;
+        private final boolean[] exact;
+        private final long size;
+        private final int[] cursors;
+        private byte[] scores;
+
+        TokenMatch(Postings[] postings, boolean[] exact, long size) {
+            this.postings = postings;
+            this.exact = exact;
+            this.size = size;
+            this.cursors = new int[postings.length];
+        }
+
+        long size() {
+            return size;
+        }
+
+        void materialize(int docCount) {
+            if (scores != null) {
+                return;
+            }
+            scores = new byte[docCount];
+            for (int i = 0; i < postings.length; i++) {
+                Postings words = postings[i];
+                for (int p = 0; p < words.size; p++) {
+                    int entry = words.entries[p];
+                    int weight = weight(exact[i], (entry & 1) == 1);
+                    if (weight > scores[entry >>> 1]) {
+                        scores[entry >>> 1] = (byte) weight;
+                    }
+                }
+            }
+        }
+
+        // Documents have to be asked for in increasing order, the postings are walked forward like a merge
+        int score(int docId) {
+            if (scores != null) {
+                return scores[docId];
+            }
+            int best = 0;
+            for (int i = 0; i < postings.length; i++) {
+                Postings words = postings[i];
+                int position = words.seek(docId, cursors[i]);
+                cursors[i] = position;
+                if (position < words.size && words.entries[position] >>> 1 == docId) {
+                    best = Math.max(best, weight(exact[i], (words.entries[position] & 1) == 1));
+                }
+            }
+            return best;
+        }
+    }
+
+    // Documents are stored column by column, the search loop only touches primitive arrays
+    private static final class Index {
+        private final TreeMap<String, Postings> terms = new TreeMap<>();
+        private final List<Doc> docs = new ArrayList<>();
+        private final Map<Long, Integer> docByProduct = new HashMap<>();
+        private final BitSet deleted = new BitSet();
+        private final BitSet available = new BitSet();
+        private long[] productIds = new long[16];
+        private double[] prices = new double[16];
+        private int size;
+
+        void add(Doc doc) {
+            int docId = size++;
+            if (docId == productIds.length) {
+                productIds = Arrays.copyOf(productIds, docId * 2);
+                prices = Arrays.copyOf(prices, docId * 2);
+            }
+            productIds[docId] = doc.productId();
+            prices[docId] = doc.price();
+            available.set(docId, doc.available());
+
+            Integer previous = docByProduct.put(doc.productId(), docId);
+            if (previous != null) {
+                deleted.set(previous);
+            }
+            docs.add(doc);
+
+            for (String word : doc.nameTokens()) {
+                terms.computeIfAbsent(word, key -> new Postings()).add(docId, true);
+            }
+            for (String word : doc.descriptionTokens()) {
+                if (!doc.nameTokens().contains(word)) {
+                    terms.computeIfAbsent(word, key -> new Postings()).add(docId, false);
+                }
+            }
+        }
+
+        Index compact() {
+            Index compacted = new Index();
+            for (int docId = 0; docId < size; docId++) {
+                if (!deleted.get(docId)) {
+                    compacted.add(docs.get(docId));
+                }
+            }
+            return compacted;
+        }
+
+        TokenMatch match(String token) {
+            SortedMap<String, Postings> words = token.length() < MIN_PREFIX_LENGTH
+                    ? terms.subMap(token, true, token, true)
+                    : terms.subMap(token, token + Character.MAX_VALUE);
+            Postings[] postings = new Postings[words.size()];
+            boolean[] exact = new boolean[words.size()];
+            long total = 0;
+            int i = 0;
+            for (Map.Entry<String, Postings> word : words.entrySet()) {
+                postings[i] = word.getValue();
+                exact[i++] = word.getKey().equals(token);
+                total += word.getValue().size;
+            }
+            return new TokenMatch(postings, exact, total);
+        }
+    }
+
+    // Entries are the document id shifted left with the lowest bit set when the word is in the name,
+    // appended in document id order so they stay sorted
+    private static final class Postings {
+        private int[] entries = new int[4];
+        private int size;
+
+        void add(int docId, boolean inName) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = docId << 1 | (inName ? 1 : 0);
+        }
+
+        // Position of the first entry of docId or after it, searching from start
+        int seek(int docId, int start) {
+            int target = docId << 1;
+            int step = 1;
+            int high = start;
+            while (high < size && entries[high] < target) {
+                start = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int position = Arrays.binarySearch(entries, start, Math.min(high + 1, size), target);
+            return position >= 0 ? position : -position - 1;
+        }
+    }
+}
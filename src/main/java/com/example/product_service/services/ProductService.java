@@ -6,7 +6,11 @@ import com.example.product_service.exceptions.StockException;
 import com.example.product_service.models.ProductEntity;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public interface ProductService {
@@ -15,19 +19,25 @@ public interface ProductService {
     ProductDTO getProductDTOById(Long id) throws NoProductsFoundException;
 
     List<ProductDTO> getProductsByIds(List<Long> productIds) throws NoProductsFoundException;
+    ProductLookupResult findProductsByIds(List<Long> productIds);
 
     List<ProductDTO> getAllProducts() throws NoProductsFoundException;
+    ProductPage getProductsPage(ProductFilter filter, Long after, int size);
+    void streamAllProducts(OutputStream outputStream) throws IOException;
+    List<ProductDTO> searchProducts(String query, Double minPrice, Double maxPrice, Boolean available, int limit);
 
 //    String getNameById(Long id) throws NoProductsFoundException;
 //    Double getPriceById(Long id) throws NoProductsFoundException;
 
     Integer getProductStockById(Long id) throws NoProductsFoundException;
     void reduceStock(Long productId, Integer quantity) throws NoProductsFoundException, StockException;
+    void reserveStock(List<StockReservation> reservations) throws NoProductsFoundException, StockException;
     void restockProduct(Long productId, Integer quantity) throws NoProductsFoundException;
+    void restockProducts(Map<Long, Integer> quantities) throws NoProductsFoundException;
 
     void createNewProduct (NewProduct newProduct) throws Exception;
     ProductEntity saveProduct(ProductEntity newProduct);
 
-    ProductAdminDTO updateProductById(UpdateProduct updateProduct, Long id) throws Exception;
+    ProductAdminDTO updateProductById(UpdateProduct updateProduct, Long id, Set<Long> expectedVersions) throws Exception;
 
 }
@@ -4,22 +4,101 @@ import com.example.product_service.dtos.*;
 import com.example.product_service.exceptions.AllBlanksException;
 import com.example.product_service.exceptions.NoProductsFoundException;
 import com.example.product_service.exceptions.ProductPriceException;
+import com.example.product_service.exceptions.ProductVersionException;
 import com.example.product_service.exceptions.StockException;
 import com.example.product_service.models.ProductEntity;
+import com.example.product_service.rabbitmq.ProductChangeEvent;
+import com.example.product_service.rabbitmq.ProductEventOutbox;
 import com.example.product_service.repositories.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import com.example.product_service.utils.LongHashMap;
+import com.example.product_service.utils.LongHashSet;
+import com.example.product_service.utils.TransactionHooks;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("product.service")
 public class ProductServiceImpl implements ProductService {
 
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private ProductLoader productLoader;
+
+    @Autowired
+    private ProductCatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private ProductEventOutbox eventOutbox;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${product.export.chunk-size:1000}")
+    private int exportChunkSize;
+
+    @Value("${product.lookup.chunk-size:500}")
+    private int lookupChunkSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter stockReserved;
+    private Counter stockRejectedByLedger;
+    private Counter stockRejectedByDatabase;
+
+    @PostConstruct
+    void registerMetrics() {
+        stockReserved = reservationCounter("reserved");
+        stockRejectedByLedger = reservationCounter("rejected_ledger");
+        stockRejectedByDatabase = reservationCounter("rejected_database");
+    }
+
+    private Counter reservationCounter(String outcome) {
+        return Counter.builder("product.stock.reservations")
+                .description("reduceStock calls by outcome, rejections by the database mean the ledger was stale")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
     @Override
+    @Transactional(readOnly = true)
     public ProductEntity getProductById(Long id) throws NoProductsFoundException {
         return productRepository.findById(id).orElseThrow( () -> new NoProductsFoundException("Product with ID " + id + " not found."));
     }
@@ -27,26 +106,144 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public ProductDTO getProductDTOById(Long id) throws NoProductsFoundException {
-        return new ProductDTO(getProductById(id));
+        if (catalogSnapshot.isReady()) {
+            ProductDTO product = catalogSnapshot.get(id);
+            if (product == null) {
+                throw notFound(id);
+            }
+            return product;
+        }
+
+        ProductDTO catalog = productCache.getCatalog(id);
+
+        // Cache misses go through the loader, a burst of lookups for the same products shares the queries
+        if (catalog == null) {
+            if (productCache.isMissing(id)) {
+                throw notFound(id);
+            }
+            return loadProduct(id);
+        }
+
+        ProductCache.Stock stock = productCache.getStock(id);
+        if (stock == null) {
+            ProductCache.Token token = productCache.token();
+            ProductStockView current = productLoader.findStockViewById(id);
+            if (current == null) {
+                throw notFound(id);
+            }
+            productCache.putStock(id, current.getStock(), current.getVersion(), token);
+            stock = new ProductCache.Stock(current.getStock(), current.getVersion());
+        }
+
+        // The version is the ETag, so the name, description and price have to be those of the same version.
+        // A catalog entry cached before a later change is reloaded rather than paired with the newer stock.
+        if (!stock.version().equals(catalog.getVersion())) {
+            return loadProduct(id);
+        }
+        return catalog;
+    }
+
+    private ProductDTO loadProduct(Long id) throws NoProductsFoundException {
+        ProductCache.Token token = productCache.token();
+        ProductDTO product = productLoader.findProductDTOById(id);
+        if (product == null) {
+            productCache.putMissing(id, token);
+            throw notFound(id);
+        }
+        productCache.put(product, token);
+        return product;
     }
 
 
+    @Override
     public List<ProductDTO> getProductsByIds(List<Long> productIds) throws NoProductsFoundException {
-        List<ProductEntity> products = productRepository.findByIdIn(productIds);
-
-        if (products.size() != productIds.size()) {
-            // Encontrar los IDs que no están en la base de datos
-            List<Long> missingIds = productIds.stream()
-                    .filter(id -> products.stream().noneMatch(product -> product.getId().equals(id)))
-                    .collect(Collectors.toList());
+        ProductLookupResult result = findProductsByIds(productIds);
 
+        if (!result.missingIds().isEmpty()) {
             // Lanzar una excepción con los IDs faltantes
-            throw new NoProductsFoundException("The following products id's were not found: " + missingIds);
+            throw new NoProductsFoundException("The following products id's were not found: " + result.missingIds());
         }
 
-        return products.stream()
-                .map(product -> new ProductDTO(product))
-                .toList();
+        return result.products();
+    }
+
+
+    // Products come back in the requested order, once per requested id even when repeated
+    @Override
+    public ProductLookupResult findProductsByIds(List<Long> productIds) {
+        LongHashMap<ProductDTO> found = new LongHashMap<>(productIds.size());
+        LongHashMap<ProductDTO> staleStock = new LongHashMap<>(16);
+        LongHashSet requested = new LongHashSet(productIds.size());
+        List<Long> notCached = new ArrayList<>();
+        List<Long> staleStockIds = new ArrayList<>();
+
+        if (catalogSnapshot.isReady()) {
+            // Everything is in memory, ids it doesn't have are missing
+            for (Long id : productIds) {
+                if (id != null && requested.add(id)) {
+                    ProductDTO product = catalogSnapshot.get(id);
+                    if (product != null) {
+                        found.put(id, product);
+                    }
+                }
+            }
+        } else {
+            for (Long id : productIds) {
+                if (id == null || !requested.add(id)) {
+                    continue;
+                }
+                ProductDTO catalog = productCache.getCatalog(id);
+                if (catalog == null) {
+                    notCached.add(id);
+                    continue;
+                }
+                ProductCache.Stock stock = productCache.getStock(id);
+                if (stock == null) {
+                    staleStock.put(id, catalog);
+                    staleStockIds.add(id);
+                } else if (stock.version().equals(catalog.getVersion())) {
+                    found.put(id, catalog);
+                } else {
+                    notCached.add(id);
+                }
+            }
+        }
+
+        // Only the ids missing from the cache go to the database, in chunks to keep the IN lists bounded
+        ProductCache.Token token = productCache.token();
+        for (List<Long> chunk : chunks(staleStockIds)) {
+            for (ProductStockView stock : productRepository.findStocksByIdIn(chunk)) {
+                productCache.putStock(stock.getId(), stock.getStock(), stock.getVersion(), token);
+                ProductDTO catalog = staleStock.get(stock.getId());
+                // Changed since the catalog entry was cached, it's reloaded whole
+                if (stock.getVersion().equals(catalog.getVersion())) {
+                    found.put(stock.getId(), catalog);
+                } else {
+                    notCached.add(stock.getId());
+                }
+            }
+        }
+
+        for (List<Long> chunk : chunks(notCached)) {
+            for (ProductDTO product : productRepository.findProductDTOsByIdIn(chunk)) {
+                productCache.put(product, token);
+                found.put(product.getId(), product);
+            }
+        }
+
+        List<ProductDTO> products = new ArrayList<>(productIds.size());
+        List<Long> missingIds = new ArrayList<>();
+        LongHashSet reportedMissing = new LongHashSet(16);
+        for (Long id : productIds) {
+            ProductDTO product = id == null ? null : found.get(id);
+            if (product != null) {
+                products.add(product);
+            } else if (id == null || reportedMissing.add(id)) {
+                missingIds.add(id);
+            }
+        }
+
+        return new ProductLookupResult(products, missingIds);
     }
 
 
@@ -66,42 +263,177 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public Integer getProductStockById(Long id) throws NoProductsFoundException {
-        ProductEntity product = productRepository.findById(id)
-                .orElseThrow(() -> new NoProductsFoundException("Product with ID " + id + " not found."));
-        return product.getStock();
+        if (productCache.isMissing(id)) {
+            throw notFound(id);
+        }
+        ProductCache.Token token = productCache.token();
+        ProductStockView stock = productLoader.findStockViewById(id);
+        if (stock == null) {
+            productCache.putMissing(id, token);
+            throw notFound(id);
+        }
+        return stock.getStock();
     }
 
 
+    // The transaction only starts once the ledger let the reservation through, so rejected calls
+    // don't hold a connection while the stock of a hot product runs out
     @Override
     public void reduceStock(Long productId, Integer quantity) throws NoProductsFoundException, StockException {
-        ProductEntity product = productRepository.findById(productId)
-                .orElseThrow(() -> new NoProductsFoundException("Product with ID " + productId + " not found."));
+        validateStock(quantity);
+
+        if (!stockLedger.isTracked(productId)) {
+            Integer stock = productRepository.findStockById(productId)
+                    .orElseThrow(() -> new NoProductsFoundException("Product with ID " + productId + " not found."));
+            stockLedger.track(productId, stock);
+        }
+
+        if (!stockLedger.tryReserve(productId, quantity)) {
+            stockRejectedByLedger.increment();
+            throw new StockException("Not enough stock for product with ID " + productId);
+        }
+
+        Boolean decremented;
+        try {
+            decremented = transactionTemplate.execute(status -> {
+                if (productRepository.decrementStock(productId, quantity) == 0) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+                List<ProductStockView> stocks = eventOutbox.recordStockChanges(List.of(productId));
+                TransactionHooks.afterCommit(() -> {
+                    productCache.evictStock(productId);
+                    catalogSnapshot.publishStocks(stocks);
+                });
+                return true;
+            });
+        } catch (RuntimeException e) {
+            // The ledger is read again from the database on the next call
+            stockLedger.evict(productId);
+            throw e;
+        }
 
-        if (product.getStock() < quantity) {
+        if (!Boolean.TRUE.equals(decremented)) {
+            // Without the ledger nothing looked the product up before the update
+            if (!productRepository.existsById(productId)) {
+                stockLedger.evict(productId);
+                throw new NoProductsFoundException("Product with ID " + productId + " not found.");
+            }
+            // The ledger was stale
+            stockLedger.evict(productId);
+            stockRejectedByDatabase.increment();
             throw new StockException("Not enough stock for product with ID " + productId);
         }
+        stockReserved.increment();
+    }
+
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void reserveStock(List<StockReservation> reservations) throws NoProductsFoundException, StockException {
+        if (reservations == null || reservations.isEmpty()) {
+            throw new StockException("At least one product has to be reserved.");
+        }
+
+        // Merge repeated lines so every product is decremented once, in id order so
+        // concurrent reservations lock the rows in the same order
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (StockReservation reservation : reservations) {
+            if (reservation.productId() == null) {
+                throw new StockException("Every reservation needs a product id.");
+            }
+            validateStock(reservation.quantity());
+            quantities.merge(reservation.productId(), reservation.quantity(), Integer::sum);
+        }
+
+        Map<Long, Integer> stocks = productRepository.findByIdIn(new ArrayList<>(quantities.keySet())).stream()
+                .collect(Collectors.toMap(ProductEntity::getId, ProductEntity::getAvailableStock));
+
+        List<Long> missingIds = quantities.keySet().stream()
+                .filter(id -> !stocks.containsKey(id))
+                .toList();
+        if (!missingIds.isEmpty()) {
+            throw new NoProductsFoundException("The following products id's were not found: " + missingIds);
+        }
+
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            if (stocks.get(line.getKey()) < line.getValue()) {
+                throw new StockException("Not enough stock for product with ID " + line.getKey());
+            }
+        }
+
+        List<Object[]> batch = new ArrayList<>(quantities.size());
+        quantities.forEach((id, quantity) -> batch.add(new Object[]{quantity, id, quantity}));
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE product_entity SET stock = stock - ?, version = version + 1 WHERE id = ? AND stock - reserved >= ?", batch);
+
+        // A concurrent checkout may have taken the stock after the validation, the whole reservation is rolled back
+        int line = 0;
+        for (Long id : quantities.keySet()) {
+            stockLedger.evict(id);
+            if (updated[line++] == 0) {
+                throw new StockException("Not enough stock for product with ID " + id);
+            }
+        }
 
-        product.setStock(product.getStock() - quantity);
-        productRepository.save(product);
+        List<ProductStockView> changed = eventOutbox.recordStockChanges(new ArrayList<>(quantities.keySet()));
+        TransactionHooks.afterCommit(() -> {
+            quantities.keySet().forEach(productCache::evictStock);
+            catalogSnapshot.publishStocks(changed);
+        });
     }
 
 
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public void restockProduct(Long productId, Integer quantity) throws NoProductsFoundException {
-        ProductEntity product = productRepository.findById(productId)
-                .orElseThrow(() -> new NoProductsFoundException("Product with ID " + productId + " not found."));
+        if (productRepository.incrementStock(productId, quantity) == 0) {
+            throw new NoProductsFoundException("Product with ID " + productId + " not found.");
+        }
+        List<ProductStockView> stocks = eventOutbox.recordStockChanges(List.of(productId));
+        TransactionHooks.afterCommit(() -> {
+            stockLedger.release(productId, quantity);
+            productCache.evictStock(productId);
+            catalogSnapshot.publishStocks(stocks);
+        });
+    }
 
-        product.setStock(product.getStock() + quantity);
-        productRepository.save(product);
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void restockProducts(Map<Long, Integer> quantities) throws NoProductsFoundException {
+        // Sorted so concurrent batches lock the rows in the same order
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+
+        List<Object[]> batch = new ArrayList<>(sorted.size());
+        sorted.forEach((id, quantity) -> batch.add(new Object[]{quantity, id}));
+        int[] updated = jdbcTemplate.batchUpdate("UPDATE product_entity SET stock = stock + ?, version = version + 1 WHERE id = ?", batch);
+
+        int line = 0;
+        for (Long id : sorted.keySet()) {
+            if (updated[line++] == 0) {
+                throw new NoProductsFoundException("Product with ID " + id + " not found.");
+            }
+        }
+
+        List<ProductStockView> stocks = eventOutbox.recordStockChanges(new ArrayList<>(sorted.keySet()));
+
+        TransactionHooks.afterCommit(() -> {
+            sorted.forEach((id, quantity) -> {
+                stockLedger.release(id, quantity);
+                productCache.evictStock(id);
+            });
+            catalogSnapshot.publishStocks(stocks);
+        });
     }
 
 
+    // Not transactional, the repository query runs in its own read-only transaction and the
+    // memory resident catalog doesn't need a connection at all
     @Override
     public List<ProductDTO> getAllProducts() throws NoProductsFoundException {
 
-        List<ProductDTO> products = productRepository.findAll().stream()
-                .map(ProductDTO::new)
-                .collect(Collectors.toList());
+        List<ProductDTO> products = catalogSnapshot.isReady() ? catalogSnapshot.all() : productRepository.findAllProductDTOs();
 
         if (products.isEmpty()) {
             throw new NoProductsFoundException("There are no products.");
@@ -111,10 +443,55 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public ProductPage getProductsPage(ProductFilter filter, Long after, int size) {
+        List<ProductDTO> products = productRepository.findProducts(filter, after, size);
+
+        Long nextCursor = products.size() < size ? null : products.get(products.size() - 1).getId();
+        return new ProductPage(products, nextCursor);
+    }
+
+
+    // Read in keyset chunks, each in its own short transaction, so a slow client doesn't keep a connection
+    // checked out for as long as it takes to read the export
+    @Override
+    public void streamAllProducts(OutputStream outputStream) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(ProductDTO.class);
+
+        Long after = null;
+        List<ProductDTO> chunk;
+        do {
+            chunk = productRepository.findProducts(ProductFilter.NONE, after, exportChunkSize);
+            for (ProductDTO product : chunk) {
+                outputStream.write(writer.writeValueAsBytes(product));
+                outputStream.write('\n');
+            }
+            if (!chunk.isEmpty()) {
+                after = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == exportChunkSize);
+        outputStream.flush();
+    }
+
+
+    @Override
+    public List<ProductDTO> searchProducts(String query, Double minPrice, Double maxPrice, Boolean available, int limit) {
+        // The index only ranks, stock and the rest of the data come from the cache or the database
+        return findProductsByIds(searchIndex.search(query, minPrice, maxPrice, available, limit)).products();
+    }
+
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
     public void createNewProduct(NewProduct newProduct) throws Exception {
         validateNewProduct(newProduct);
-        ProductEntity product = new ProductEntity(newProduct.name(), newProduct.productdescription(), newProduct.productprice(), newProduct.stock());
-        saveProduct(product);
+        ProductEntity product = saveProduct(new ProductEntity(newProduct.name(), newProduct.productdescription(), newProduct.productprice(), newProduct.stock()));
+        eventOutbox.record(ProductChangeEvent.created(product));
+        TransactionHooks.afterCommit(() -> {
+            productCache.evict(product.getId());
+            searchIndex.index(product);
+            catalogSnapshot.publish(List.of(new ProductDTO(product)));
+        });
     }
 
 
@@ -125,12 +502,18 @@ public class ProductServiceImpl implements ProductService {
 
 
     @Override
-    public ProductAdminDTO updateProductById(UpdateProduct updatedProduct, Long id) throws Exception {
+    @Transactional(rollbackFor = Exception.class)
+    public ProductAdminDTO updateProductById(UpdateProduct updatedProduct, Long id, Set<Long> expectedVersions) throws Exception {
 
         ProductEntity product = productRepository.findById(id)
                 .orElseThrow(()-> new NoProductsFoundException("Product with ID " + id + " not found."));
 
+        if (expectedVersions != null && !expectedVersions.contains(product.getVersion())) {
+            throw new ProductVersionException("Product with ID " + id + " was modified, its current version is " + product.getVersion() + ".");
+        }
+
         validateUpdatedProduct(updatedProduct);
+        boolean wasAvailable = product.isAvailable();
 
         if (!updatedProduct.name().isBlank()) {
             product.setName(updatedProduct.name());
@@ -145,7 +528,7 @@ public class ProductServiceImpl implements ProductService {
         }
 
         if (updatedProduct.stock() != null) {
-            product.setStock(updatedProduct.stock() );
+            product.setAvailableStock(updatedProduct.stock());
         }
 
         if (!updatedProduct.availability().isBlank()) {
@@ -158,11 +541,45 @@ public class ProductServiceImpl implements ProductService {
         }
 
 
-        productRepository.save(product);
+        // The flush checks the version read above, so changes made since then aren't overwritten
+        try {
+            product = productRepository.saveAndFlush(product);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new ProductVersionException("Product with ID " + id + " was modified while updating it, try again.");
+        }
+
+        List<ProductChangeEvent> events = new ArrayList<>(2);
+        events.add(ProductChangeEvent.updated(product));
+        if (product.isAvailable() != wasAvailable) {
+            events.add(ProductChangeEvent.availabilityChanged(product));
+        }
+        eventOutbox.recordAll(events);
+
+        ProductEntity updated = product;
+        TransactionHooks.afterCommit(() -> {
+            stockLedger.evict(id);
+            productCache.evict(id);
+            searchIndex.index(updated);
+            catalogSnapshot.publish(List.of(new ProductDTO(updated)));
+        });
         return new ProductAdminDTO(product);
     }
 
 
+    private List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>((ids.size() + lookupChunkSize - 1) / lookupChunkSize);
+        for (int from = 0; from < ids.size(); from += lookupChunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + lookupChunkSize, ids.size())));
+        }
+        return chunks;
+    }
+
+    private static NoProductsFoundException notFound(Long id) {
+        return new NoProductsFoundException("Product with ID " + id + " not found.");
+    }
+
+
+
     //Validations
     public void validateUpdatedProduct (UpdateProduct updatedProduct) throws Exception {
         validateProductPrice(updatedProduct.productprice());
@@ -183,7 +600,7 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
-    public void validateNewProduct (NewProduct newProduct) throws Exception {
+    public static void validateNewProduct (NewProduct newProduct) throws Exception {
         validateMissingInfo(newProduct.name(), newProduct.productdescription(), newProduct.productprice(), newProduct.stock());
         validateProductPrice(newProduct.productprice());
         validateStock(newProduct.stock());
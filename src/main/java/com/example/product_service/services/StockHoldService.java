@@ -0,0 +1,283 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ProductStockView;
+import com.example.product_service.dtos.StockHold;
+import com.example.product_service.dtos.StockReservation;
+import com.example.product_service.exceptions.HoldNotFoundException;
+import com.example.product_service.exceptions.NoProductsFoundException;
+import com.example.product_service.exceptions.StockException;
+import com.example.product_service.models.StockHoldEntity;
+import com.example.product_service.rabbitmq.ProductEventOutbox;
+import com.example.product_service.repositories.ProductRepository;
+import com.example.product_service.repositories.StockHoldRepository;
+import com.example.product_service.utils.TransactionHooks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Holds set stock aside for a checkout without taking it: the reserved count of the product goes up and
+// the stock available to sell goes down. Confirming the hold takes the stock, releasing it or letting it
+// expire gives it back, so stock no longer leaks when a rollback message from the order service is lost.
+@Service
+public class StockHoldService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockHoldService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockHoldRepository holdRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ProductEventOutbox eventOutbox;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductCatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${product.holds.ttl:10m}")
+    private Duration defaultTtl;
+
+    @Value("${product.holds.max-ttl:1h}")
+    private Duration maxTtl;
+
+    @Value("${product.holds.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    private Counter holdsCreated;
+    private Counter holdsConfirmed;
+    private Counter holdsReleased;
+    private Counter linesExpired;
+
+    @PostConstruct
+    void registerMetrics() {
+        holdsCreated = holdCounter("created");
+        holdsConfirmed = holdCounter("confirmed");
+        holdsReleased = holdCounter("released");
+        linesExpired = Counter.builder("product.stock.holds.expired.lines")
+                .description("Hold lines given back by the expiry sweep")
+                .register(meterRegistry);
+    }
+
+    private Counter holdCounter(String outcome) {
+        return Counter.builder("product.stock.holds")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public StockHold createHold(List<StockReservation> items, Long ttlSeconds) throws NoProductsFoundException, StockException {
+        if (items == null || items.isEmpty()) {
+            throw new StockException("At least one product has to be held.");
+        }
+        Duration ttl = ttlSeconds == null ? defaultTtl : Duration.ofSeconds(ttlSeconds);
+        if (ttl.compareTo(Duration.ofSeconds(1)) < 0 || ttl.compareTo(maxTtl) > 0) {
+            throw new StockException("The hold ttl has to be between 1 and " + maxTtl.toSeconds() + " seconds.");
+        }
+
+        // Merged and sorted by id like reserveStock, so concurrent holds lock the rows in the same order
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (StockReservation item : items) {
+            if (item.productId() == null) {
+                throw new StockException("Every hold line needs a product id.");
+            }
+            ProductServiceImpl.validateStock(item.quantity());
+            quantities.merge(item.productId(), item.quantity(), Integer::sum);
+        }
+
+        List<Object[]> batch = new ArrayList<>(quantities.size());
+        quantities.forEach((id, quantity) -> batch.add(new Object[]{quantity, id, quantity}));
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE product_entity SET reserved = reserved + ?, version = version + 1 WHERE id = ? AND stock - reserved >= ?", batch);
+
+        List<Long> rejected = new ArrayList<>();
+        int line = 0;
+        for (Long id : quantities.keySet()) {
+            if (updated[line++] == 0) {
+                rejected.add(id);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            Set<Long> existing = productRepository.findStocksByIdIn(rejected).stream()
+                    .map(ProductStockView::getId)
+                    .collect(Collectors.toSet());
+            List<Long> missingIds = rejected.stream().filter(id -> !existing.contains(id)).toList();
+            if (!missingIds.isEmpty()) {
+                throw new NoProductsFoundException("The following products id's were not found: " + missingIds);
+            }
+            throw new StockException("Not enough stock for product with ID " + rejected.get(0));
+        }
+
+        String holdId = UUID.randomUUID().toString();
+        Instant expiresAt = Instant.now().plus(ttl);
+        List<StockHoldEntity> lines = new ArrayList<>(quantities.size());
+        quantities.forEach((id, quantity) -> lines.add(new StockHoldEntity(holdId, id, quantity, expiresAt)));
+        holdRepository.saveAll(lines);
+
+        List<Long> ids = new ArrayList<>(quantities.keySet());
+        List<ProductStockView> stocks = eventOutbox.recordStockChanges(ids);
+        TransactionHooks.afterCommit(() -> {
+            ids.forEach(id -> {
+                stockLedger.evict(id);
+                productCache.evictStock(id);
+            });
+            catalogSnapshot.publishStocks(stocks);
+        });
+        holdsCreated.increment();
+
+        List<StockReservation> held = new ArrayList<>(quantities.size());
+        quantities.forEach((id, quantity) -> held.add(new StockReservation(id, quantity)));
+        return new StockHold(holdId, expiresAt, held);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public void confirmHold(String holdId) throws HoldNotFoundException, StockException {
+        Map<Long, Integer> quantities = claim(holdId, true);
+
+        // The stock available to sell doesn't change, the held units leave both stock and reserved
+        List<Object[]> batch = new ArrayList<>(quantities.size());
+        quantities.forEach((id, quantity) -> batch.add(new Object[]{quantity, quantity, id, quantity}));
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE product_entity SET stock = stock - ?, reserved = reserved - ?, version = version + 1 WHERE id = ? AND stock >= ?", batch);
+
+        // Only possible when the stock was lowered by hand below what was held
+        int line = 0;
+        for (Long id : quantities.keySet()) {
+            if (updated[line++] == 0) {
+                throw new StockException("Not enough stock left for product with ID " + id + ", the hold can still be released.");
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(quantities.keySet());
+        List<ProductStockView> stocks = eventOutbox.recordStockChanges(ids);
+        TransactionHooks.afterCommit(() -> {
+            ids.forEach(productCache::evictStock);
+            catalogSnapshot.publishStocks(stocks);
+        });
+        holdsConfirmed.increment();
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public void releaseHold(String holdId) throws HoldNotFoundException {
+        release(claim(holdId, false));
+        holdsReleased.increment();
+    }
+
+    // A database index on the expiry works as the timer queue: it survives restarts and is shared by
+    // every instance, and each run only reads the holds that are already due
+    @Scheduled(fixedDelayString = "${product.holds.sweep-interval-ms:1000}")
+    public void releaseExpiredHolds() {
+        try {
+            releaseExpiredHolds(Instant.now());
+        } catch (Exception e) {
+            logger.warn("Could not release the expired stock holds: {}", e.getMessage());
+        }
+    }
+
+    public int releaseExpiredHolds(Instant now) {
+        int total = 0;
+        int swept;
+        do {
+            swept = transactionTemplate.execute(status -> sweep(now));
+            total += swept;
+        } while (swept == sweepBatchSize);
+        return total;
+    }
+
+    private int sweep(Instant now) {
+        List<StockHoldEntity> expired = holdRepository.findByExpiresAtLessThanEqualOrderByExpiresAtAscIdAsc(now, Limit.of(sweepBatchSize));
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        // Lines confirmed or released meanwhile are already gone and aren't given back twice
+        int[] deleted = deleteLines(expired);
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (int i = 0; i < expired.size(); i++) {
+            if (deleted[i] > 0) {
+                quantities.merge(expired.get(i).getProductId(), expired.get(i).getQuantity(), Integer::sum);
+                linesExpired.increment();
+            }
+        }
+        release(quantities);
+        return expired.size();
+    }
+
+    // Deletes the lines of the hold, whoever deletes them owns the hold. Fails when another request,
+    // or the expiry sweep, got some of them first.
+    private Map<Long, Integer> claim(String holdId, boolean mustBeActive) throws HoldNotFoundException {
+        List<StockHoldEntity> lines = holdRepository.findByHoldIdOrderById(holdId);
+        if (lines.isEmpty() || (mustBeActive && !lines.get(0).getExpiresAt().isAfter(Instant.now()))) {
+            throw new HoldNotFoundException("Hold " + holdId + " was not found or has expired.");
+        }
+
+        int[] deleted = deleteLines(lines);
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (deleted[i] == 0) {
+                throw new HoldNotFoundException("Hold " + holdId + " was not found or has expired.");
+            }
+            quantities.merge(lines.get(i).getProductId(), lines.get(i).getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    private int[] deleteLines(List<StockHoldEntity> lines) {
+        List<Object[]> ids = new ArrayList<>(lines.size());
+        lines.forEach(line -> ids.add(new Object[]{line.getId()}));
+        return jdbcTemplate.batchUpdate("DELETE FROM stock_hold_entity WHERE id = ?", ids);
+    }
+
+    private void release(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(quantities.size());
+        quantities.forEach((id, quantity) -> batch.add(new Object[]{quantity, id}));
+        jdbcTemplate.batchUpdate("UPDATE product_entity SET reserved = reserved - ?, version = version + 1 WHERE id = ?", batch);
+
+        List<ProductStockView> stocks = eventOutbox.recordStockChanges(new ArrayList<>(quantities.keySet()));
+        TransactionHooks.afterCommit(() -> {
+            quantities.forEach((id, quantity) -> {
+                stockLedger.release(id, quantity);
+                productCache.evictStock(id);
+            });
+            catalogSnapshot.publishStocks(stocks);
+        });
+    }
+}
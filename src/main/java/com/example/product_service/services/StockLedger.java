@@ -0,0 +1,96 @@
+package com.example.product_service.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-memory view of the stock of recently touched products. It only rejects reservations early,
+// the conditional update in ProductRepository is still the one that decides.
+@Component
+public class StockLedger {
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @Value("${product.stock.ledger.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.stock.ledger.ttl-ms:1000}")
+    private long ttlMillis;
+
+    @Value("${product.stock.ledger.max-entries:10000}")
+    private int maxEntries;
+
+    public boolean isTracked(Long productId) {
+        if (!enabled) {
+            return true;
+        }
+        Entry entry = entries.get(productId);
+        return entry != null && !entry.isExpired(System.nanoTime());
+    }
+
+    public void track(Long productId, int stock) {
+        if (!enabled) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            purgeExpired();
+        }
+        entries.put(productId, new Entry(stock, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+    }
+
+    // Returns false only when the ledger knows there isn't enough stock
+    public boolean tryReserve(Long productId, int quantity) {
+        if (!enabled) {
+            return true;
+        }
+        Entry entry = entries.get(productId);
+        if (entry == null || entry.isExpired(System.nanoTime())) {
+            return true;
+        }
+        while (true) {
+            int current = entry.stock.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (entry.stock.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(Long productId, int quantity) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = entries.get(productId);
+        if (entry != null) {
+            entry.stock.addAndGet(quantity);
+        }
+    }
+
+    public void evict(Long productId) {
+        entries.remove(productId);
+    }
+
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    private static final class Entry {
+        private final AtomicInteger stock;
+        private final long expiresAt;
+
+        private Entry(int stock, long expiresAt) {
+            this.stock = new AtomicInteger(stock);
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.product_service.services;
 
 import com.example.product_service.config.JwtUtils;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -8,6 +9,8 @@ import org.springframework.stereotype.Service;
 @Service
 public class TokenDataServiceImpl {
 
+    private static final String CLAIMS_ATTRIBUTE = TokenDataServiceImpl.class.getName() + ".claims";
+
     @Autowired
     private JwtUtils jwtUtils;
 
@@ -15,24 +18,28 @@ public class TokenDataServiceImpl {
         return request.getHeader("Authorization").substring(7);
     }
 
+    // The claims are parsed once per request and kept as a request attribute
+    private Claims getClaims(HttpServletRequest request){
+        if (request.getAttribute(CLAIMS_ATTRIBUTE) instanceof Claims claims) {
+            return claims;
+        }
+        Claims claims = jwtUtils.parseClaims(extraerToken(request));
+        request.setAttribute(CLAIMS_ATTRIBUTE, claims);
+        return claims;
+    }
+
     // Retrieves and returns email from the token
     public String getEmail(HttpServletRequest request){
-        String token = extraerToken(request);
-        String email = jwtUtils.extractUsername(token);
-        return email;
+        return getClaims(request).getSubject();
     }
 
     // Retrieves and returns id from the token
     public Long getId(HttpServletRequest request){
-        String token = extraerToken(request);
-        Long id = jwtUtils.extractUserId(token);
-        return id;
+        return Long.valueOf(getClaims(request).get("id", String.class));
     }
 
     // Retrieves and returns role from the token
     public String getRole(HttpServletRequest request){
-        String token = extraerToken(request);
-        String role = jwtUtils.extractUserRole(token);
-        return role;
+        return getClaims(request).get("role", String.class);
     }
 }
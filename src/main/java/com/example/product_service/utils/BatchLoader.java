@@ -0,0 +1,150 @@
+package com.example.product_service.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+// Loads values by id for many concurrent callers with as few queries as possible:
+// - a caller asking for an id that is already being loaded waits for that query instead of running its own,
+//   unless the generation moved since that load started (a cache evict), the query may have read older data
+// - ids asked for while other queries are running are gathered for up to the window, or until maxBatchSize,
+//   and loaded together. With nothing else running a lookup goes out right away, so a quiet service pays no delay.
+// The first caller of a batch runs its query on its own thread, there is no background thread.
+// Locks instead of synchronized so waiting virtual threads don't pin their carrier.
+public final class BatchLoader<V> {
+
+    private final Function<List<Long>, Map<Long, V>> loadAll;
+    private final LongSupplier generation;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Consumer<Integer> batchListener;
+
+    private final ConcurrentHashMap<Long, Loading<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchFull = lock.newCondition();
+    private Batch<V> open;
+
+    public BatchLoader(Function<List<Long>, Map<Long, V>> loadAll, LongSupplier generation, long windowNanos, int maxBatchSize,
+                       Consumer<Integer> batchListener) {
+        this.loadAll = loadAll;
+        this.generation = generation;
+        this.windowNanos = windowNanos;
+        this.maxBatchSize = maxBatchSize;
+        this.batchListener = batchListener;
+    }
+
+    // Returns null when there is nothing with the id
+    public V load(Long id) {
+        Loading<V> mine = new Loading<>(generation.getAsLong(), new CompletableFuture<>());
+        Loading<V> loading = inFlight.putIfAbsent(id, mine);
+        while (loading != null) {
+            if (loading.generation() >= mine.generation()) {
+                return join(loading.future());
+            }
+            // Started before the generation this caller saw, later callers wait for this caller's load instead
+            if (inFlight.replace(id, loading, mine)) {
+                break;
+            }
+            loading = inFlight.putIfAbsent(id, mine);
+        }
+
+        Batch<V> batch;
+        boolean leader;
+        lock.lock();
+        try {
+            leader = open == null;
+            if (leader) {
+                open = new Batch<>();
+            }
+            batch = open;
+            batch.ids.add(id);
+            batch.loads.add(mine);
+            if (batch.ids.size() >= maxBatchSize) {
+                open = null;
+                batchFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (leader) {
+            gather(batch);
+            run(batch);
+        }
+        return join(mine.future());
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private void gather(Batch<V> batch) {
+        lock.lock();
+        try {
+            long remaining = running.get() > 0 ? windowNanos : 0;
+            while (open == batch && remaining > 0) {
+                remaining = batchFull.awaitNanos(remaining);
+            }
+            if (open == batch) {
+                open = null;
+            }
+        } catch (InterruptedException e) {
+            if (open == batch) {
+                open = null;
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run(Batch<V> batch) {
+        running.incrementAndGet();
+        try {
+            batchListener.accept(batch.ids.size());
+            Map<Long, V> values = loadAll.apply(batch.ids);
+            for (int i = 0; i < batch.ids.size(); i++) {
+                batch.loads.get(i).future().complete(values.get(batch.ids.get(i)));
+            }
+        } catch (RuntimeException | Error e) {
+            batch.loads.forEach(load -> load.future().completeExceptionally(e));
+        } finally {
+            running.decrementAndGet();
+            for (int i = 0; i < batch.ids.size(); i++) {
+                inFlight.remove(batch.ids.get(i), batch.loads.get(i));
+            }
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // The generation is read before the load joins a batch, so its query starts after it
+    private record Loading<V>(long generation, CompletableFuture<V> future) { }
+
+    private static final class Batch<V> {
+        private final List<Long> ids = new ArrayList<>();
+        private final List<Loading<V>> loads = new ArrayList<>();
+    }
+}
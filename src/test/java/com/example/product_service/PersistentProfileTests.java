@@ -0,0 +1,51 @@
+package com.example.product_service;
+
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles({"test", "persistent"})
+class PersistentProfileTests {
+
+    @TempDir
+    static Path databaseDir;
+
+    @DynamicPropertySource
+    static void databasePath(DynamicPropertyRegistry registry) {
+        registry.add("PRODUCT_DB_PATH", () -> databaseDir.resolve("productdb").toString());
+    }
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void storesProductsInTheDatabaseFile() {
+        long seeded = productRepository.count();
+        List<ProductEntity> products = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            products.add(new ProductEntity("Persistent " + i, "Test", 1.0, 1));
+        }
+
+        List<Long> ids = productRepository.saveAll(products).stream().map(ProductEntity::getId).toList();
+
+        assertEquals(7, seeded);
+        assertEquals(120, ids.stream().distinct().count());
+        assertEquals(seeded + 120, productRepository.count());
+        assertTrue(Files.exists(databaseDir.resolve("productdb.mv.db")));
+    }
+}
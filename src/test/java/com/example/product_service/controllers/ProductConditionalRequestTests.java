@@ -0,0 +1,84 @@
+package com.example.product_service.controllers;
+
+import com.example.product_service.dtos.UpdateProduct;
+import com.example.product_service.exceptions.ProductVersionException;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import com.example.product_service.services.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductConditionalRequestTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void returnsNotModifiedUntilTheProductChanges() throws Exception {
+        Long id = productRepository.save(new ProductEntity("ETag", "Test", 10.0, 10)).getId();
+
+        String etag = mockMvc.perform(get("/api/product/{id}", id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/product/{id}", id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        productService.reduceStock(id, 1);
+
+        String changed = mockMvc.perform(get("/api/product/{id}", id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, changed);
+    }
+
+    @Test
+    void updatesOnlyTheExpectedVersion() throws Exception {
+        ProductEntity product = productRepository.save(new ProductEntity("If-Match", "Test", 10.0, 10));
+        Long version = product.getVersion();
+        UpdateProduct update = new UpdateProduct("Renamed", "Test", 12.0, 20, "true");
+
+        productService.reduceStock(product.getId(), 1);
+
+        assertThrows(ProductVersionException.class, () -> productService.updateProductById(update, product.getId(), Set.of(version)));
+        assertEquals("If-Match", productRepository.findById(product.getId()).orElseThrow().getName());
+
+        Long current = productRepository.findById(product.getId()).orElseThrow().getVersion();
+        assertEquals(current + 1, productService.updateProductById(update, product.getId(), Set.of(version, current)).getVersion());
+    }
+
+    @Test
+    void ifMatchUsesStrongComparisonOnEveryTag() {
+        assertNull(ProductController.ifMatchVersions(null));
+        assertNull(ProductController.ifMatchVersions("*"));
+        assertEquals(Set.of(3L, 5L), ProductController.ifMatchVersions("\"3\", \"5\""));
+        assertEquals(Set.of(5L), ProductController.ifMatchVersions("W/\"3\", \"5\""));
+        assertEquals(Set.of(), ProductController.ifMatchVersions("W/\"5\""));
+        assertEquals(Set.of(), ProductController.ifMatchVersions("\"abc\""));
+    }
+}
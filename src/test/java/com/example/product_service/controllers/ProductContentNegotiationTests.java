@@ -0,0 +1,111 @@
+package com.example.product_service.controllers;
+
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductContentNegotiationTests {
+
+    private final CBORMapper cbor = new CBORMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void answersInCborTheSameDocumentsAsInJson() throws Exception {
+        Long first = productRepository.save(new ProductEntity("Cbor one", "Test", 10.0, 5)).getId();
+        Long second = productRepository.save(new ProductEntity("Cbor two", "Test", 12.5, 7)).getId();
+
+        byte[] json = mockMvc.perform(post("/api/product/details")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(List.of(second, first))))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        byte[] binary = mockMvc.perform(post("/api/product/details")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cbor.writeValueAsBytes(List.of(second, first))))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode products = cbor.readTree(binary);
+        assertEquals(objectMapper.readTree(json), products);
+        assertEquals(second, products.get(0).get("id").asLong());
+
+        byte[] stock = mockMvc.perform(get("/api/product/stock/{id}", first).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(5, cbor.readValue(stock, Integer.class));
+    }
+
+    @Test
+    void followsTheQualityOfTheAcceptedTypesAndVariesOnAccept() throws Exception {
+        Long id = productRepository.save(new ProductEntity("Cbor quality", "Test", 10.0, 5)).getId();
+        byte[] ids = objectMapper.writeValueAsBytes(List.of(id));
+
+        mockMvc.perform(post("/api/product/details").contentType(MediaType.APPLICATION_JSON).content(ids)
+                        .header(HttpHeaders.ACCEPT, "application/cbor;q=0.1, application/json"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+
+        mockMvc.perform(post("/api/product/details").contentType(MediaType.APPLICATION_JSON).content(ids)
+                        .header(HttpHeaders.ACCEPT, "application/cbor, */*;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+
+        mockMvc.perform(get("/api/product/stock/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+    }
+
+    @Test
+    void malformedAcceptIsABadRequest() throws Exception {
+        mockMvc.perform(post("/api/product/details").contentType(MediaType.APPLICATION_JSON).content("[1]")
+                        .header(HttpHeaders.ACCEPT, "application/cbor;q=high"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void errorsStayPlainText() throws Exception {
+        mockMvc.perform(post("/api/product/details")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_CBOR_VALUE)
+                        .content(cbor.writeValueAsBytes(List.of(Long.MAX_VALUE))))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.product_service.controllers;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductFilter;
+import com.example.product_service.dtos.ProductPage;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import com.example.product_service.services.ProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Small export chunks so the export crosses several of them, and a single export at a time
+@SpringBootTest(properties = {"product.export.chunk-size=2", "product.export.max-concurrent=1"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductListingTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void pagesFollowTheCursorUntilTheLastOne() {
+        String description = "Paged " + UUID.randomUUID();
+        List<Long> ids = productRepository.saveAll(List.of(
+                new ProductEntity("A", description, 1.0, 1),
+                new ProductEntity("B", description, 1.0, 1),
+                new ProductEntity("C", description, 1.0, 1))).stream().map(ProductEntity::getId).toList();
+        ProductFilter filter = new ProductFilter(null, null, null, description);
+
+        ProductPage first = productService.getProductsPage(filter, null, 2);
+        assertEquals(ids.subList(0, 2), first.products().stream().map(ProductDTO::getId).toList());
+        assertEquals(ids.get(1), first.nextCursor());
+
+        ProductPage last = productService.getProductsPage(filter, first.nextCursor(), 2);
+        assertEquals(ids.subList(2, 3), last.products().stream().map(ProductDTO::getId).toList());
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void exportWritesEveryProductOnItsOwnLine() throws Exception {
+        productRepository.saveAll(List.of(
+                new ProductEntity("Exported 1", "Test", 1.0, 1),
+                new ProductEntity("Exported 2", "Test", 1.0, 1),
+                new ProductEntity("Exported 3", "Test", 1.0, 1)));
+
+        MvcResult started = mockMvc.perform(get("/api/product/products/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        List<Long> ids = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            JsonNode product = objectMapper.readTree(line);
+            assertTrue(product.has("name"));
+            ids.add(product.get("id").asLong());
+        }
+        assertEquals(productRepository.count(), ids.size());
+        assertEquals(ids.stream().sorted().distinct().toList(), ids);
+    }
+
+    @Test
+    void exportPermitIsReturnedWhenTheRequestEnds() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/product/products/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(get("/api/product/products/stream"))
+                .andExpect(status().isServiceUnavailable());
+
+        // The client is gone and the async request ends, whether or not the body got to run
+        started.getRequest().getAsyncContext().complete();
+
+        MvcResult next = mockMvc.perform(get("/api/product/products/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(next))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.product_service.controllers;
+
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductMetricsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void productEndpointsGetLatencyBuckets() throws Exception {
+        Long id = productRepository.save(new ProductEntity("Metrics", "Test", 10.0, 5)).getId();
+
+        mockMvc.perform(post("/api/product/details").contentType(MediaType.APPLICATION_JSON).content("[" + id + "]"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/product/{id}", id))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/product/products"))
+                .andExpect(status().isOk());
+
+        assertEquals(6, timer("/api/product/details").takeSnapshot().histogramCounts().length);
+        assertEquals(6, timer("/api/product/{id}").takeSnapshot().histogramCounts().length);
+        assertEquals(6, timer("/api/product/products").takeSnapshot().histogramCounts().length);
+    }
+
+    private Timer timer(String uri) {
+        return meterRegistry.get("http.server.requests").tag("uri", uri).timer();
+    }
+}
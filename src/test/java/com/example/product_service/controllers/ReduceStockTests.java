@@ -0,0 +1,40 @@
+package com.example.product_service.controllers;
+
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "product.stock.ledger.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReduceStockTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void unknownProductsAreNotFoundWithoutTheLedger() throws Exception {
+        Long id = productRepository.save(new ProductEntity("No ledger", "Test", 10.0, 3)).getId();
+
+        mockMvc.perform(put("/api/product/{id}/reduce-stock", Long.MAX_VALUE).param("quantity", "1"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/api/product/{id}/reduce-stock", id).param("quantity", "5"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put("/api/product/{id}/reduce-stock", id).param("quantity", "2"))
+                .andExpect(status().isOk());
+
+        assertEquals(1, productRepository.findStockById(id).orElseThrow());
+    }
+}
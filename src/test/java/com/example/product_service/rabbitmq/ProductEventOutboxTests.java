@@ -0,0 +1,114 @@
+package com.example.product_service.rabbitmq;
+
+import com.example.product_service.dtos.NewProduct;
+import com.example.product_service.exceptions.StockException;
+import com.example.product_service.repositories.ProductRepository;
+import com.example.product_service.services.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "product.events.relay.enabled=true",
+        "product.events.relay.initial-delay-ms=3600000",
+        "product.events.relay.batch-size=10000"})
+@ActiveProfiles("test")
+class ProductEventOutboxTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductEventRelay relay;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private RabbitTemplate rabbitTemplate;
+
+    @Test
+    void recordsEventsOnlyForCommittedChanges() throws Exception {
+        Long id = createProduct("Outbox product", 5);
+
+        productService.reduceStock(id, 2);
+        assertThrows(StockException.class, () -> productService.reduceStock(id, 10));
+
+        assertEquals(List.of("PRODUCT_CREATED", "STOCK_CHANGED"), eventTypes(id));
+        String stockEvent = jdbcTemplate.queryForObject(
+                "SELECT payload FROM outbox_event_entity WHERE product_id = ? AND event_type = 'STOCK_CHANGED'", String.class, id);
+        assertTrue(stockEvent.contains("\"stock\":3"), stockEvent);
+    }
+
+    @Test
+    void publishedEventsAreRemovedFromTheOutbox() throws Exception {
+        Long id = createProduct("Relayed product", 5);
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(rabbitTemplate));
+
+        relay.relayBatch();
+
+        verify(rabbitTemplate).send(eq(ProductEventRelay.EXCHANGE), eq("product.created"),
+                argThat((Message message) -> new String(message.getBody(), StandardCharsets.UTF_8).contains("\"name\":\"Relayed product\"")));
+        assertEquals(List.of(), eventTypes(id));
+    }
+
+    @Test
+    void rowsClaimedByOneRelayAreSkippedByTheOthers() throws Exception {
+        Long id = createProduct("Claimed product", 5);
+        CountDownLatch publishing = new CountDownLatch(1);
+        CountDownLatch confirm = new CountDownLatch(1);
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            publishing.countDown();
+            confirm.await(5, TimeUnit.SECONDS);
+            return invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(rabbitTemplate);
+        });
+
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(relay::relayBatch);
+        assertTrue(publishing.await(5, TimeUnit.SECONDS));
+
+        // Another instance's relay runs while the first one waits for the broker
+        assertEquals(0, relay.relayBatch());
+        assertFalse(first.isDone());
+
+        confirm.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS) > 0);
+        verify(rabbitTemplate).send(eq(ProductEventRelay.EXCHANGE), eq("product.created"),
+                argThat((Message message) -> new String(message.getBody(), StandardCharsets.UTF_8).contains("\"name\":\"Claimed product\"")));
+        assertEquals(List.of(), eventTypes(id));
+    }
+
+    private Long createProduct(String name, int stock) throws Exception {
+        productService.createNewProduct(new NewProduct(name, "Test", 10.0, stock));
+        return productRepository.findByNameIn(List.of(name)).get(0).getId();
+    }
+
+    private List<String> eventTypes(Long productId) {
+        return jdbcTemplate.queryForList("SELECT event_type FROM outbox_event_entity WHERE product_id = ? ORDER BY id", String.class, productId);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.product_service.rabbitmq;
+
+import com.example.product_service.dtos.StockReservation;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RabbitMQConsumerTests {
+
+    @Autowired
+    private RabbitMQConsumer rabbitMQConsumer;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockRollbackMessageConverter messageConverter;
+
+    @Test
+    void mergesTheRollbacksOfABatch() {
+        Long first = productRepository.save(new ProductEntity("First", "Test", 10.0, 1)).getId();
+        Long second = productRepository.save(new ProductEntity("Second", "Test", 10.0, 1)).getId();
+
+        rabbitMQConsumer.rollbackStock(List.of(message(first + ",2"), message(second + ",5"), message("invalid"), message(first + ",3")));
+
+        assertEquals(6, productRepository.findStockById(first).orElseThrow());
+        assertEquals(6, productRepository.findStockById(second).orElseThrow());
+    }
+
+    @Test
+    void unknownProductDoesNotBlockTheRestOfTheBatch() {
+        Long product = productRepository.save(new ProductEntity("Product", "Test", 10.0, 1)).getId();
+
+        rabbitMQConsumer.rollbackStock(List.of(message(product + ",4"), message(Long.MAX_VALUE + ",1")));
+
+        assertEquals(5, productRepository.findStockById(product).orElseThrow());
+    }
+
+    @Test
+    void redeliveredMessagesAreAppliedOnce() {
+        Long product = productRepository.save(new ProductEntity("Product", "Test", 10.0, 1)).getId();
+        String key = UUID.randomUUID().toString();
+
+        rabbitMQConsumer.rollbackStock(List.of(message(product + ",2", key), message(product + ",2", key)));
+        rabbitMQConsumer.rollbackStock(List.of(message(product + ",2", key), message(product + ",3")));
+
+        assertEquals(6, productRepository.findStockById(product).orElseThrow());
+    }
+
+    @Test
+    void acceptsJsonAndBinaryMessagesWithSeveralItems() {
+        Long first = productRepository.save(new ProductEntity("First", "Test", 10.0, 1)).getId();
+        Long second = productRepository.save(new ProductEntity("Second", "Test", 10.0, 1)).getId();
+        StockRollback rollback = new StockRollback(List.of(new StockReservation(first, 2), new StockReservation(second, 3)));
+
+        MessageProperties binaryProperties = new MessageProperties();
+        binaryProperties.setContentType(StockRollbackMessageConverter.BINARY_CONTENT_TYPE);
+        Message json = messageConverter.toMessage(rollback, new MessageProperties());
+        Message binary = messageConverter.toMessage(rollback, binaryProperties);
+
+        rabbitMQConsumer.rollbackStock(List.of(json, binary, message(first + ",1")));
+
+        assertEquals(6, productRepository.findStockById(first).orElseThrow());
+        assertEquals(7, productRepository.findStockById(second).orElseThrow());
+    }
+
+    @Test
+    void rejectsBinaryMessagesWhoseItemCountDoesNotMatchTheBody() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(StockRollbackMessageConverter.BINARY_CONTENT_TYPE);
+        // 0x40000000 items of 12 bytes overflow an int to 0, the size of the empty rest of the body
+        Message message = new Message(new byte[]{0x40, 0, 0, 0}, properties);
+
+        assertThrows(MessageConversionException.class, () -> messageConverter.fromMessage(message));
+    }
+
+    private static Message message(String body) {
+        return message(body, null);
+    }
+
+    private static Message message(String body, String messageId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(messageId);
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.product_service.rabbitmq;
+
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = "product.rabbitmq.dedup.persistent=true")
+@ActiveProfiles("test")
+class RollbackRedeliveryTests {
+
+    @Autowired
+    private RabbitMQConsumer rabbitMQConsumer;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoSpyBean
+    private MessageDeduplicator deduplicator;
+
+    @Test
+    void failedBatchIsAppliedWhenRedelivered() {
+        Long product = productRepository.save(new ProductEntity("Product", "Test", 10.0, 1)).getId();
+        String key = UUID.randomUUID().toString();
+        doThrow(new QueryTimeoutException("Database unavailable")).doCallRealMethod().when(deduplicator).recordProcessed(anyCollection());
+
+        // Thrown so the container requeues the batch instead of acking it
+        assertThrows(QueryTimeoutException.class, () -> rabbitMQConsumer.rollbackStock(List.of(message(product + ",2", key))));
+        assertEquals(1, productRepository.findStockById(product).orElseThrow());
+
+        rabbitMQConsumer.rollbackStock(List.of(message(product + ",2", key)));
+        rabbitMQConsumer.rollbackStock(List.of(message(product + ",2", key)));
+
+        assertEquals(3, productRepository.findStockById(product).orElseThrow());
+    }
+
+    @Test
+    void messagesRecordedByAnotherInstanceAreSkipped() {
+        Long product = productRepository.save(new ProductEntity("Product", "Test", 10.0, 1)).getId();
+        String applied = UUID.randomUUID().toString();
+        String fresh = UUID.randomUUID().toString();
+        // Both instances passed the claim, the other one committed first
+        doAnswer(invocation -> new LinkedHashSet<>(invocation.<Collection<String>>getArgument(0))).when(deduplicator).claim(anyCollection());
+        jdbcTemplate.update("INSERT INTO processed_message_entity (message_key, processed_at) VALUES (?, ?)", applied, Timestamp.from(Instant.now()));
+
+        rabbitMQConsumer.rollbackStock(List.of(message(product + ",2", applied), message(product + ",3", fresh)));
+
+        assertEquals(4, productRepository.findStockById(product).orElseThrow());
+    }
+
+    private static Message message(String body, String messageId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(messageId);
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
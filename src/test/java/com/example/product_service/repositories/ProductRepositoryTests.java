@@ -0,0 +1,47 @@
+package com.example.product_service.repositories;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductFilter;
+import com.example.product_service.models.ProductEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductRepositoryTests {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void findsProductsMatchingOnlyTheSentFilters() {
+        ProductEntity hidden = new ProductEntity("Hidden", "Filter_test 100% cotton", 15.0, 5);
+        hidden.setAvailable(false);
+        List<Long> ids = productRepository.saveAll(List.of(
+                new ProductEntity("Cheap", "Filter_test 100% cotton", 5.0, 5),
+                new ProductEntity("Mid", "FILTER_TEST 100% cotton", 15.0, 5),
+                hidden,
+                new ProductEntity("Expensive", "Filter_test 100% cotton", 50.0, 5),
+                new ProductEntity("Other", "Filtertest 100% cotton", 15.0, 5))).stream().map(ProductEntity::getId).toList();
+
+        // '_' and '%' are matched literally
+        assertEquals(List.of(ids.get(0), ids.get(1), ids.get(2), ids.get(3)),
+                ids(productRepository.findProducts(new ProductFilter(null, null, null, "filter_test 100%"), null, 10)));
+        assertEquals(List.of(ids.get(1), ids.get(3)),
+                ids(productRepository.findProducts(new ProductFilter(true, 10.0, null, "filter_test"), null, 10)));
+        assertEquals(List.of(ids.get(1)),
+                ids(productRepository.findProducts(new ProductFilter(true, 10.0, 20.0, "filter_test"), null, 10)));
+        assertEquals(List.of(ids.get(2), ids.get(3)),
+                ids(productRepository.findProducts(new ProductFilter(null, null, null, "filter_test"), ids.get(1), 2)));
+    }
+
+    private static List<Long> ids(List<ProductDTO> products) {
+        return products.stream().map(ProductDTO::getId).toList();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.StockReservation;
+import com.example.product_service.exceptions.NoProductsFoundException;
+import com.example.product_service.exceptions.StockException;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BulkStockReservationTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void reservesEveryLineAndMergesRepeatedProducts() throws Exception {
+        Long first = productRepository.save(new ProductEntity("First", "Test", 10.0, 10)).getId();
+        Long second = productRepository.save(new ProductEntity("Second", "Test", 10.0, 5)).getId();
+
+        productService.reserveStock(List.of(
+                new StockReservation(first, 3),
+                new StockReservation(second, 5),
+                new StockReservation(first, 2)));
+
+        assertEquals(5, productRepository.findStockById(first).orElseThrow());
+        assertEquals(0, productRepository.findStockById(second).orElseThrow());
+    }
+
+    @Test
+    void rollsBackEveryLineWhenOneIsShort() {
+        Long first = productRepository.save(new ProductEntity("First", "Test", 10.0, 10)).getId();
+        Long second = productRepository.save(new ProductEntity("Second", "Test", 10.0, 1)).getId();
+
+        assertThrows(StockException.class, () -> productService.reserveStock(List.of(
+                new StockReservation(first, 4),
+                new StockReservation(second, 2))));
+
+        assertEquals(10, productRepository.findStockById(first).orElseThrow());
+        assertEquals(1, productRepository.findStockById(second).orElseThrow());
+    }
+
+    @Test
+    void rejectsUnknownProductsWithoutTouchingStock() {
+        Long first = productRepository.save(new ProductEntity("First", "Test", 10.0, 10)).getId();
+
+        assertThrows(NoProductsFoundException.class, () -> productService.reserveStock(List.of(
+                new StockReservation(first, 4),
+                new StockReservation(Long.MAX_VALUE, 1))));
+
+        assertEquals(10, productRepository.findStockById(first).orElseThrow());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ProductDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProductCacheTests {
+
+    private final ProductDTO product = new ProductDTO(1L, "Remera", "Algodón", 20.5, 10, 3L);
+
+    private static ProductCache cache(boolean enabled, Duration stockTtl) {
+        return new ProductCache(enabled, 100, Duration.ofMinutes(10), stockTtl, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void cachesCatalogAndStockUntilEvicted() {
+        ProductCache productCache = cache(true, Duration.ofMinutes(1));
+        assertNull(productCache.getCatalog(1L));
+
+        productCache.put(product, productCache.token());
+
+        assertEquals("Remera", productCache.getCatalog(1L).getName());
+        assertEquals(new ProductCache.Stock(10, 3L), productCache.getStock(1L));
+
+        productCache.evictStock(1L);
+        assertNull(productCache.getStock(1L));
+        assertNotNull(productCache.getCatalog(1L));
+
+        productCache.evict(1L);
+        assertNull(productCache.getCatalog(1L));
+
+        ProductCache disabled = cache(false, Duration.ofMinutes(1));
+        disabled.put(product, disabled.token());
+        assertNull(disabled.getCatalog(1L));
+    }
+
+    @Test
+    void valuesLoadedBeforeAnEvictAreNotCached() {
+        ProductCache productCache = cache(true, Duration.ofMinutes(1));
+
+        // A read loads the product, an update commits and evicts it, then the read tries to cache what it loaded
+        ProductCache.Token token = productCache.token();
+        productCache.evict(1L);
+        productCache.put(product, token);
+        productCache.putMissing(2L, token);
+
+        assertNull(productCache.getCatalog(1L));
+        assertNull(productCache.getStock(1L));
+        assertFalse(productCache.isMissing(2L));
+
+        // A stock change only keeps the stock out
+        token = productCache.token();
+        productCache.evictStock(1L);
+        productCache.put(product, token);
+
+        assertNotNull(productCache.getCatalog(1L));
+        assertNull(productCache.getStock(1L));
+    }
+
+    @Test
+    void stockExpiresBeforeTheCatalog() throws Exception {
+        ProductCache productCache = cache(true, Duration.ofMillis(50));
+        productCache.put(product, productCache.token());
+
+        Thread.sleep(150);
+
+        assertNull(productCache.getStock(1L));
+        assertNotNull(productCache.getCatalog(1L));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.NewProduct;
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductStockView;
+import com.example.product_service.dtos.UpdateProduct;
+import com.example.product_service.exceptions.NoProductsFoundException;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import com.example.product_service.utils.TransactionHooks;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = "product.catalog.in-memory.enabled=true")
+@ActiveProfiles("test")
+class ProductCatalogSnapshotTests {
+
+    @Autowired
+    private ProductCatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private ProductService productService;
+
+    @MockitoSpyBean
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void servesWritesOnceTheyCommit() throws Exception {
+        assertTrue(catalogSnapshot.isReady());
+        productService.createNewProduct(new NewProduct("Snapshot product", "Test", 10.0, 10));
+        Long id = productRepository.findByNameIn(List.of("Snapshot product")).get(0).getId();
+        assertEquals(10, productService.getProductDTOById(id).getStock());
+
+        productService.reduceStock(id, 4);
+        productService.updateProductById(new UpdateProduct("Renamed snapshot product", "Test", 12.0, 20, "true"), id, null);
+        productService.restockProduct(id, 5);
+
+        ProductDTO product = catalogSnapshot.get(id);
+        assertEquals("Renamed snapshot product", product.getName());
+        assertEquals(25, product.getStock());
+        assertEquals(productRepository.findById(id).orElseThrow().getVersion(), product.getVersion());
+        assertThrows(NoProductsFoundException.class, () -> productService.getProductDTOById(Long.MAX_VALUE));
+    }
+
+    @Test
+    void keepsProductsInIdOrderAcrossSegments() {
+        List<ProductDTO> products = new ArrayList<>();
+        for (long id = 50_000_000; id < 50_003_000; id += 3) {
+            products.add(new ProductDTO(id, "Product " + id, "Test", 1.0, 1, 0L));
+        }
+        Collections.shuffle(products);
+        catalogSnapshot.publish(products);
+        // Older versions are ignored
+        catalogSnapshot.publish(List.of(new ProductDTO(50_000_003L, "Old", "Test", 1.0, 1, -1L)));
+
+        List<Long> ids = catalogSnapshot.all().stream().map(ProductDTO::getId).toList();
+        List<Long> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertEquals(sorted, ids);
+        assertEquals("Product 50000003", catalogSnapshot.get(50_000_003L).getName());
+        assertEquals("Product 50002997", catalogSnapshot.get(50_002_997L).getName());
+        assertNull(catalogSnapshot.get(50_000_001L));
+    }
+
+    @Test
+    void staleStockChangesReloadInTheirOwnTransaction() {
+        ProductEntity product = productRepository.save(new ProductEntity("Stale snapshot product", "Test", 10.0, 10));
+        catalogSnapshot.publish(List.of(new ProductDTO(product.getId(), product.getName(), "Test", 10.0, 10, product.getVersion())));
+        long version = product.getVersion() + 2;
+        List<Boolean> readOnly = new ArrayList<>();
+        doAnswer(invocation -> {
+            readOnly.add(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+            return List.of(new ProductDTO(product.getId(), "Reloaded snapshot product", "Test", 10.0, 7, version));
+        }).when(productRepository).findProductDTOsByIdIn(anyList());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // A rename and a stock change, only the stock change is published
+            jdbcTemplate.update("UPDATE product_entity SET name = ?, stock = ?, version = ? WHERE id = ?",
+                    "Reloaded snapshot product", 7, version, product.getId());
+            TransactionHooks.afterCommit(() -> catalogSnapshot.publishStocks(List.of(stockView(product.getId(), 7, version))));
+        });
+
+        ProductDTO reloaded = catalogSnapshot.get(product.getId());
+        assertEquals("Reloaded snapshot product", reloaded.getName());
+        assertEquals(7, reloaded.getStock());
+        assertEquals(version, reloaded.getVersion());
+        // Read in a new transaction, not in the one that just committed
+        assertEquals(List.of(true), readOnly);
+    }
+
+    private static ProductStockView stockView(Long id, int stock, long version) {
+        return new ProductStockView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getStock() {
+                return stock;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+}
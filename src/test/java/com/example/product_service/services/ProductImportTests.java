@@ -0,0 +1,79 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ImportReport;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"product.import.chunk-size=2", "product.import.max-reported-errors=2"})
+@ActiveProfiles("test")
+class ProductImportTests {
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void importsValidCsvRowsAndReportsTheRest() throws Exception {
+        productRepository.save(new ProductEntity("Import existing", "Old", 1.0, 1));
+        String csv = """
+                stock,name,productdescription,productprice
+                5,Import A,"Desk, oak \"\"XL\"\"",120.5
+                3,Import existing,New,2.5
+                1,Import B,Lamp,-1
+                x,Import C,Chair,10
+                2,,Chair,10
+                4,Import D,Shelf,30
+                """;
+
+        ImportReport report = productImportService.importProducts(stream(csv), ProductImportService.Format.CSV);
+
+        assertEquals(6, report.rows());
+        assertEquals(2, report.created());
+        assertEquals(1, report.updated());
+        assertEquals(3, report.rejected());
+        assertEquals(List.of(4L, 5L), report.errors().stream().map(error -> error.line()).toList());
+        assertTrue(report.errorsTruncated());
+
+        ProductEntity desk = productRepository.findByNameIn(List.of("Import A")).get(0);
+        assertEquals("Desk, oak \"XL\"", desk.getProductdescription());
+        ProductEntity existing = productRepository.findByNameIn(List.of("Import existing")).get(0);
+        assertEquals(2.5, existing.getProductprice());
+        assertEquals(3, existing.getStock());
+    }
+
+    @Test
+    void importsNdjsonKeepingTheLastRowOfARepeatedName() throws Exception {
+        String ndjson = """
+                {"name":"Import E","productdescription":"Mug","productprice":5.0,"stock":10}
+                {"name":"Import E","productdescription":"Mug","productprice":6.0,"stock":12}
+                {"name":"Import F"}
+                not json
+                """;
+
+        ImportReport report = productImportService.importProducts(stream(ndjson), ProductImportService.Format.NDJSON);
+
+        assertEquals(4, report.rows());
+        assertEquals(1, report.created());
+        assertEquals(2, report.rejected());
+        List<ProductEntity> mugs = productRepository.findByNameIn(List.of("Import E"));
+        assertEquals(1, mugs.size());
+        assertEquals(6.0, mugs.get(0).getProductprice());
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductLookupResult;
+import com.example.product_service.dtos.ProductPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ProductJsonCacheTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ProductJsonCache productJson = new ProductJsonCache(objectMapper, true, 100);
+
+    private final ProductDTO first = new ProductDTO(1L, "Remera", "Algodón \"peinado\"", 20.5, 10, 3L);
+    private final ProductDTO second = new ProductDTO(2L, "Buzo", "Con capucha", 45.0, 0, 7L);
+
+    @Test
+    void composedResponsesMatchJackson() throws Exception {
+        assertArrayEquals(objectMapper.writeValueAsBytes(first), productJson.product(first));
+        assertArrayEquals(objectMapper.writeValueAsBytes(List.of(first, second, first)), productJson.products(List.of(first, second, first)));
+        assertArrayEquals(objectMapper.writeValueAsBytes(List.of()), productJson.products(List.of()));
+
+        ProductPage page = new ProductPage(List.of(first, second), 2L);
+        assertArrayEquals(objectMapper.writeValueAsBytes(page), productJson.page(page));
+        ProductPage lastPage = new ProductPage(List.of(), null);
+        assertArrayEquals(objectMapper.writeValueAsBytes(lastPage), productJson.page(lastPage));
+
+        ProductLookupResult lookup = new ProductLookupResult(List.of(second), Arrays.asList(5L, null));
+        assertArrayEquals(objectMapper.writeValueAsBytes(lookup), productJson.lookup(lookup));
+    }
+
+    @Test
+    void encodingIsReusedUntilTheVersionChanges() {
+        byte[] encoded = productJson.product(first);
+        assertSame(encoded, productJson.product(new ProductDTO(1L, "Remera", "Algodón \"peinado\"", 20.5, 10, 3L)));
+
+        byte[] changed = productJson.product(new ProductDTO(1L, "Remera", "Algodón \"peinado\"", 20.5, 9, 4L));
+        assertFalse(Arrays.equals(encoded, changed));
+
+        // Same version with different data, as a stale catalog entry paired with the current stock would be
+        byte[] mixed = productJson.product(new ProductDTO(1L, "Remera vieja", "Algodón \"peinado\"", 20.5, 9, 4L));
+        assertFalse(Arrays.equals(changed, mixed));
+    }
+
+    @Test
+    void listsLargerThanTheCacheAreWrittenDirectly() throws Exception {
+        ProductJsonCache small = new ProductJsonCache(objectMapper, true, 1);
+        List<ProductDTO> products = List.of(first, second, first);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(products), small.products(products));
+    }
+}
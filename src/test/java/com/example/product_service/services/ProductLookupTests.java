@@ -0,0 +1,125 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.ProductDTO;
+import com.example.product_service.dtos.ProductLookupResult;
+import com.example.product_service.dtos.UpdateProduct;
+import com.example.product_service.exceptions.NoProductsFoundException;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.rabbitmq.ProductChangeListener;
+import com.example.product_service.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {"product.lookup.chunk-size=2", "product.cache.missing-ttl=1m"})
+@ActiveProfiles("test")
+class ProductLookupTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductChangeListener productChangeListener;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void returnsProductsInTheRequestedOrderAcrossChunks() throws Exception {
+        List<Long> ids = productRepository.saveAll(List.of(
+                new ProductEntity("A", "Test", 1.0, 1),
+                new ProductEntity("B", "Test", 1.0, 1),
+                new ProductEntity("C", "Test", 1.0, 1),
+                new ProductEntity("D", "Test", 1.0, 1),
+                new ProductEntity("E", "Test", 1.0, 1))).stream().map(ProductEntity::getId).toList();
+        List<Long> requested = List.of(ids.get(4), ids.get(1), ids.get(3), ids.get(1), ids.get(0), ids.get(2));
+
+        List<Long> returned = productService.getProductsByIds(requested).stream().map(ProductDTO::getId).toList();
+
+        assertEquals(requested, returned);
+    }
+
+    @Test
+    void partialLookupReportsEachMissingIdOnce() {
+        Long id = productRepository.save(new ProductEntity("A", "Test", 1.0, 1)).getId();
+        Long missing = Long.MAX_VALUE;
+
+        ProductLookupResult result = productService.findProductsByIds(Arrays.asList(missing, id, null, missing));
+
+        assertEquals(List.of(id), result.products().stream().map(ProductDTO::getId).toList());
+        assertEquals(Arrays.asList(missing, null), result.missingIds());
+        assertThrows(NoProductsFoundException.class, () -> productService.getProductsByIds(List.of(id, missing)));
+    }
+
+    @Test
+    void unknownIdsAreAnsweredFromTheCacheUntilTheProductIsWritten() throws Exception {
+        Long id = 900_000_001L;
+        assertThrows(NoProductsFoundException.class, () -> productService.getProductDTOById(id));
+
+        // Written behind the service's back, the cached miss still answers
+        jdbcTemplate.update("INSERT INTO product_entity (id, name, productdescription, productprice, stock, reserved, available, version) "
+                + "VALUES (?, 'Late', 'Test', 1.0, 3, 0, true, 0)", id);
+        assertThrows(NoProductsFoundException.class, () -> productService.getProductDTOById(id));
+        assertThrows(NoProductsFoundException.class, () -> productService.getProductStockById(id));
+
+        // What the other instances do when the product.created event reaches them
+        productChangeListener.productChanged(new Message(("{\"type\":\"PRODUCT_CREATED\",\"productId\":" + id + "}").getBytes(StandardCharsets.UTF_8)));
+        assertEquals(3, productService.getProductStockById(id));
+        assertEquals("Late", productService.getProductDTOById(id).getName());
+    }
+
+    @Test
+    void cachedProductsAreReloadedAfterAnUpdate() throws Exception {
+        Long id = productRepository.save(new ProductEntity("Cached", "Test", 10.0, 5)).getId();
+        assertEquals("Cached", productService.getProductDTOById(id).getName());
+
+        productService.updateProductById(new UpdateProduct("Renamed", "", 12.0, 8, "true"), id, null);
+
+        ProductDTO product = productService.getProductDTOById(id);
+        assertEquals("Renamed", product.getName());
+        assertEquals(12.0, product.getProductprice());
+        assertEquals(8, product.getStock());
+    }
+
+    @Test
+    void catalogEntriesOlderThanTheStockAreReloaded() throws Exception {
+        Long id = productRepository.save(new ProductEntity("Versioned", "Test", 10.0, 5)).getId();
+        Long version = productService.getProductDTOById(id).getVersion();
+
+        // Committed and not evicted yet, then the cached stock runs out
+        rename(id, "Renamed once");
+        productCache.evictStock(id);
+        ProductDTO product = productService.getProductDTOById(id);
+        assertEquals("Renamed once", product.getName());
+        assertEquals(version + 1, product.getVersion());
+
+        rename(id, "Renamed twice");
+        productCache.evictStock(id);
+        assertEquals("Renamed twice", productService.findProductsByIds(List.of(id)).products().get(0).getName());
+
+        // What the other instances do when the product.updated event reaches them
+        rename(id, "Renamed elsewhere");
+        productChangeListener.productChanged(new Message(("{\"type\":\"PRODUCT_UPDATED\",\"productId\":" + id + "}").getBytes(StandardCharsets.UTF_8)));
+        assertEquals("Renamed elsewhere", productService.getProductDTOById(id).getName());
+    }
+
+    private void rename(Long id, String name) {
+        jdbcTemplate.update("UPDATE product_entity SET name = ?, version = version + 1 WHERE id = ?", name, id);
+    }
+}
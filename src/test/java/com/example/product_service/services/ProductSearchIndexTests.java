@@ -0,0 +1,47 @@
+package com.example.product_service.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductSearchIndexTests {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        index.index(1L, "Remera Básica", "Remera de algodón", 20.0, true);
+        index.index(2L, "Buzo", "Buzo con capucha de algodón", 45.0, true);
+        index.index(3L, "Remera estampada", "Algodón peinado", 30.0, false);
+        index.index(4L, "Pantalón", "Jean recto", 60.0, true);
+        index.index(5L, "Musculosa", "Remera sin mangas", 15.0, true);
+    }
+
+    @Test
+    void matchesPrefixesAndRanksNameMatchesFirst() {
+        assertEquals(List.of(1L, 2L, 3L), index.search("algod", null, null, null, 10));
+        assertEquals(List.of(1L, 3L, 5L), index.search("remera", null, null, null, 10));
+        assertEquals(List.of(1L, 3L, 5L), index.search("rem", null, null, null, 10));
+        // Every word has to match, accents are ignored
+        assertEquals(List.of(1L), index.search("remera basica", null, null, null, 10));
+    }
+
+    @Test
+    void appliesFiltersAndLimit() {
+        assertEquals(List.of(1L, 2L), index.search("algodon", null, 50.0, true, 10));
+        assertEquals(List.of(2L, 4L), index.search("", 40.0, null, null, 10));
+        assertEquals(List.of(1L), index.search("algodon", null, null, null, 1));
+    }
+
+    @Test
+    void reindexedProductsReplaceTheirPreviousVersion() {
+        index.index(4L, "Remera lisa", "Jean recto", 60.0, true);
+
+        assertEquals(List.of(1L, 3L, 4L, 5L), index.search("remera", null, null, null, 10));
+        assertEquals(List.of(), index.search("pantalon", null, null, null, 10));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.product_service.services;
+
+import com.example.product_service.dtos.StockHold;
+import com.example.product_service.dtos.StockReservation;
+import com.example.product_service.dtos.UpdateProduct;
+import com.example.product_service.exceptions.HoldNotFoundException;
+import com.example.product_service.exceptions.StockException;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class StockHoldTests {
+
+    @Autowired
+    private StockHoldService stockHoldService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void heldStockIsNotAvailableUntilReleased() throws Exception {
+        Long id = productRepository.save(new ProductEntity("Held", "Test", 10.0, 10)).getId();
+
+        StockHold hold = stockHoldService.createHold(List.of(new StockReservation(id, 4), new StockReservation(id, 2)), null);
+
+        assertEquals(List.of(new StockReservation(id, 6)), hold.items());
+        assertEquals(4, productService.getProductStockById(id));
+        assertThrows(StockException.class, () -> productService.reduceStock(id, 5));
+        assertThrows(StockException.class, () -> stockHoldService.createHold(List.of(new StockReservation(id, 5)), null));
+
+        stockHoldService.releaseHold(hold.holdId());
+
+        assertEquals(10, productService.getProductStockById(id));
+        assertThrows(HoldNotFoundException.class, () -> stockHoldService.confirmHold(hold.holdId()));
+    }
+
+    @Test
+    void confirmingTakesTheHeldStock() throws Exception {
+        Long id = productRepository.save(new ProductEntity("Confirmed", "Test", 10.0, 10)).getId();
+        String holdId = stockHoldService.createHold(List.of(new StockReservation(id, 3)), 60L).holdId();
+
+        stockHoldService.confirmHold(holdId);
+
+        ProductEntity product = productRepository.findById(id).orElseThrow();
+        assertEquals(7, product.getStock());
+        assertEquals(0, product.getReserved());
+        assertThrows(HoldNotFoundException.class, () -> stockHoldService.releaseHold(holdId));
+    }
+
+    @Test
+    void updatedStockKeepsTheHeldUnitsOnTop() throws Exception {
+        Long id = productRepository.save(new ProductEntity("Updated", "Test", 10.0, 10)).getId();
+        String holdId = stockHoldService.createHold(List.of(new StockReservation(id, 4)), 60L).holdId();
+
+        productService.updateProductById(new UpdateProduct("", "", 10.0, 2, "true"), id, null);
+
+        assertEquals(2, productService.getProductStockById(id));
+        stockHoldService.confirmHold(holdId);
+        ProductEntity product = productRepository.findById(id).orElseThrow();
+        assertEquals(2, product.getStock());
+        assertEquals(0, product.getReserved());
+    }
+
+    @Test
+    void expiredHoldsAreGivenBack() throws Exception {
+        Long id = productRepository.save(new ProductEntity("Expired", "Test", 10.0, 10)).getId();
+        String holdId = stockHoldService.createHold(List.of(new StockReservation(id, 8)), 1L).holdId();
+
+        stockHoldService.releaseExpiredHolds(Instant.now().plus(1, ChronoUnit.HOURS));
+
+        assertEquals(10, productService.getProductStockById(id));
+        assertThrows(HoldNotFoundException.class, () -> stockHoldService.confirmHold(holdId));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.product_service.services;
+
+import com.example.product_service.exceptions.StockException;
+import com.example.product_service.models.ProductEntity;
+import com.example.product_service.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class StockReservationConcurrencyTests {
+
+    private static final int THREADS = 64;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void parallelReductionsNeverOversell() throws Exception {
+        int initialStock = 1000;
+        int attempts = 5000;
+        Long productId = productRepository.save(new ProductEntity("Flash sale", "Test", 10.0, initialStock)).getId();
+
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(attempts, () -> {
+            try {
+                productService.reduceStock(productId, 1);
+                reserved.incrementAndGet();
+            } catch (StockException e) {
+                rejected.incrementAndGet();
+            }
+            return null;
+        });
+
+        assertEquals(initialStock, reserved.get());
+        assertEquals(attempts - initialStock, rejected.get());
+        assertEquals(0, productRepository.findStockById(productId).orElseThrow());
+    }
+
+    @Test
+    void interleavedReduceAndRestockKeepsStockConsistent() throws Exception {
+        int initialStock = 500;
+        Long productId = productRepository.save(new ProductEntity("Hot product", "Test", 10.0, initialStock)).getId();
+
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger restocked = new AtomicInteger();
+        AtomicInteger task = new AtomicInteger();
+        runConcurrently(4000, () -> {
+            if (task.getAndIncrement() % 4 == 0) {
+                productService.restockProduct(productId, 2);
+                restocked.addAndGet(2);
+            } else {
+                try {
+                    productService.reduceStock(productId, 3);
+                    reserved.addAndGet(3);
+                } catch (StockException ignored) {
+                }
+            }
+            return null;
+        });
+
+        int finalStock = productRepository.findStockById(productId).orElseThrow();
+        assertEquals(initialStock + restocked.get() - reserved.get(), finalStock);
+    }
+
+    private void runConcurrently(int tasks, Callable<Void> work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>(tasks);
+        try {
+            for (int i = 0; i < tasks; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return work.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.product_service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchLoaderTests {
+
+    @Test
+    void coalescesTheSameIdAndBatchesTheOthers() throws Exception {
+        List<List<Long>> queries = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstQueryStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstQuery = new CountDownLatch(1);
+        BatchLoader<String> loader = new BatchLoader<>(ids -> {
+            queries.add(List.copyOf(ids));
+            if (ids.contains(1L)) {
+                firstQueryStarted.countDown();
+                await(releaseFirstQuery);
+            }
+            Map<Long, String> values = new HashMap<>();
+            ids.stream().filter(id -> id != 99L).forEach(id -> values.put(id, "product " + id));
+            return values;
+        }, () -> 0, TimeUnit.SECONDS.toNanos(5), 3, size -> { });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<String> first = executor.submit(() -> loader.load(1L));
+            firstQueryStarted.await();
+
+            // While the first query runs: the same id waits for it, three other ids fill one batch
+            List<Future<String>> sameId = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                sameId.add(executor.submit(() -> loader.load(1L)));
+            }
+            Future<String> second = executor.submit(() -> loader.load(2L));
+            Future<String> third = executor.submit(() -> loader.load(3L));
+            Future<String> missing = executor.submit(() -> loader.load(99L));
+
+            assertEquals("product 2", second.get(5, TimeUnit.SECONDS));
+            assertEquals("product 3", third.get(5, TimeUnit.SECONDS));
+            assertNull(missing.get(5, TimeUnit.SECONDS));
+
+            releaseFirstQuery.countDown();
+            assertEquals("product 1", first.get(5, TimeUnit.SECONDS));
+            for (Future<String> result : sameId) {
+                assertEquals("product 1", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, queries.size());
+        assertEquals(List.of(1L), queries.get(0));
+        assertEquals(3, queries.get(1).size());
+        assertEquals(0, loader.inFlight());
+    }
+
+    @Test
+    void failuresReachEveryCallerOfTheBatch() {
+        BatchLoader<String> loader = new BatchLoader<>(ids -> {
+            throw new IllegalStateException("database down");
+        }, () -> 0, 0, 10, size -> { });
+
+        assertThrows(IllegalStateException.class, () -> loader.load(1L));
+        assertEquals(0, loader.inFlight());
+    }
+
+    @Test
+    void callersDontWaitForAQueryStartedBeforeAnEvict() throws Exception {
+        AtomicLong generation = new AtomicLong();
+        AtomicLong version = new AtomicLong(1);
+        CountDownLatch firstQueryStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstQuery = new CountDownLatch(1);
+        List<List<Long>> queries = Collections.synchronizedList(new ArrayList<>());
+        BatchLoader<String> loader = new BatchLoader<>(ids -> {
+            String value = "version " + version.get();
+            queries.add(List.copyOf(ids));
+            if (queries.size() == 1) {
+                firstQueryStarted.countDown();
+                await(releaseFirstQuery);
+            }
+            return Map.of(1L, value);
+        }, generation::get, 0, 10, size -> { });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = executor.submit(() -> loader.load(1L));
+            firstQueryStarted.await();
+
+            // An update commits and evicts while the first query is running
+            version.set(2);
+            generation.incrementAndGet();
+
+            Future<String> second = executor.submit(() -> loader.load(1L));
+            assertEquals("version 2", second.get(5, TimeUnit.SECONDS));
+
+            releaseFirstQuery.countDown();
+            assertEquals("version 1", first.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, queries.size());
+        assertEquals(0, loader.inFlight());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}